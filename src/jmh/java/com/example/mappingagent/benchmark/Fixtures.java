@@ -0,0 +1,50 @@
+package com.example.mappingagent.benchmark;
+
+import com.example.mappingagent.service.ArrayInference;
+import com.example.mappingagent.service.BoundedLevenshteinScorer;
+import com.example.mappingagent.service.EnhancedSimilarityService;
+import com.example.mappingagent.service.MappingMetrics;
+import com.example.mappingagent.service.MappingService;
+import com.example.mappingagent.service.SchemaParser;
+import com.example.mappingagent.service.SemanticMatching;
+import com.example.mappingagent.service.SimilarityService;
+import com.example.mappingagent.service.SynonymStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// The services under benchmark, wired by hand with the defaults from application.properties
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    // Observations are no-ops and meters go to a registry nobody reads, as in an application without actuator
+    static MappingMetrics metrics() {
+        return new MappingMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+    }
+
+    static SchemaParser schemaParser() {
+        return new SchemaParser(new ObjectMapper(), ArrayInference.FIRST, 0, metrics());
+    }
+
+    static SimilarityService similarityService() {
+        return new SimilarityService(new BoundedLevenshteinScorer());
+    }
+
+    static EnhancedSimilarityService enhancedSimilarityService() {
+        return new EnhancedSimilarityService(
+                new StubLLMService(), null, new SynonymStore(new ObjectMapper(), "", 0.8),
+                new BoundedLevenshteinScorer(), metrics(), SemanticMatching.LLM, 10000, 64, 16);
+    }
+
+    static MappingService mappingService() {
+        // MappingService uses field injection
+        MappingService mappingService = new MappingService();
+        ReflectionTestUtils.setField(mappingService, "similarityService", similarityService());
+        ReflectionTestUtils.setField(mappingService, "schemaParser", schemaParser());
+        ReflectionTestUtils.setField(mappingService, "metrics", metrics());
+        return mappingService;
+    }
+}
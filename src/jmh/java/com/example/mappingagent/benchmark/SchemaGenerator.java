@@ -0,0 +1,155 @@
+package com.example.mappingagent.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic sample documents for the benchmarks. A source document and its target counterpart have the same
+ * shape, but the target renames fields the way real integrations do: snake_case instead of camelCase,
+ * abbreviations, a few dropped or retyped fields. So both exact and similarity matching get work.
+ */
+public final class SchemaGenerator {
+
+    public enum Shape {
+        // One object with size scalar fields
+        WIDE,
+        // Nested objects about size / 5 levels deep, with a few scalars on every level
+        DEEP,
+        // Arrays of objects holding further arrays, size fields in total
+        ARRAYS
+    }
+
+    private static final String[] WORDS = {
+            "customer", "order", "address", "city", "amount", "created", "status", "email", "phone", "price",
+            "quantity", "total", "name", "country", "postal", "currency", "discount", "shipping", "billing", "item"
+    };
+    private static final Map<String, String> ABBREVIATIONS = Map.of(
+            "customer", "cust", "address", "addr", "quantity", "qty", "amount", "amt", "number", "no",
+            "currency", "ccy", "discount", "disc", "shipping", "ship", "created", "crt", "postal", "zip");
+    private static final int LEVEL_SCALARS = 4;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SchemaGenerator() {
+    }
+
+    static String source(Shape shape, int size) {
+        return json(generate(shape, size, false));
+    }
+
+    static String target(Shape shape, int size) {
+        return json(generate(shape, size, true));
+    }
+
+    private static Map<String, Object> generate(Shape shape, int size, boolean target) {
+        // Same seed for both sides, so the target is a renamed copy of the source
+        Generator generator = new Generator(new Random(size * 31L + shape.ordinal()), target);
+        return switch (shape) {
+            case WIDE -> generator.object(size);
+            case DEEP -> generator.deep(Math.max(1, size / (LEVEL_SCALARS + 1)));
+            case ARRAYS -> generator.arrays(size);
+        };
+    }
+
+    private static String json(Object document) {
+        try {
+            return MAPPER.writeValueAsString(document);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Generator {
+        private final Random random;
+        private final boolean target;
+        private int fieldCount;
+
+        Generator(Random random, boolean target) {
+            this.random = random;
+            this.target = target;
+        }
+
+        Map<String, Object> object(int fields) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            for (int i = 0; i < fields; i++) {
+                putScalar(object);
+            }
+            return object;
+        }
+
+        Map<String, Object> deep(int levels) {
+            Map<String, Object> object = object(LEVEL_SCALARS);
+            if (levels > 1) {
+                put(object, deep(levels - 1));
+            }
+            return object;
+        }
+
+        Map<String, Object> arrays(int fields) {
+            Map<String, Object> object = new LinkedHashMap<>();
+            int remaining = fields;
+            while (remaining > 0) {
+                // An array of objects with a few scalars and a nested array of smaller objects
+                int outer = Math.min(remaining, LEVEL_SCALARS + 1);
+                Map<String, Object> element = object(outer - 1);
+                remaining -= outer;
+                int inner = Math.min(remaining, LEVEL_SCALARS);
+                if (inner > 0) {
+                    put(element, List.of(object(inner), object(inner)));
+                    remaining -= inner;
+                }
+                List<Object> elements = new ArrayList<>();
+                elements.add(element);
+                elements.add(element);
+                put(object, elements);
+            }
+            return object;
+        }
+
+        private void putScalar(Map<String, Object> object) {
+            Object value = switch (random.nextInt(4)) {
+                case 0 -> random.nextInt(10_000);
+                case 1 -> random.nextDouble() * 1000;
+                case 2 -> random.nextBoolean();
+                default -> "value" + random.nextInt(100);
+            };
+            // One in ten target fields changes type, e.g. a number sent as a string
+            if (random.nextInt(10) == 0 && target) {
+                value = String.valueOf(value);
+            }
+            put(object, value);
+        }
+
+        private void put(Map<String, Object> object, Object value) {
+            String first = WORDS[random.nextInt(WORDS.length)];
+            String second = WORDS[random.nextInt(WORDS.length)];
+            int index = fieldCount++;
+            int renaming = random.nextInt(8);
+            if (!target) {
+                object.put(first + capitalize(second) + index, value);
+            } else if (renaming == 0 && !(value instanceof Map || value instanceof List)) {
+                // Dropped from the target; nothing can match it. Nested values stay so the shapes keep their depth
+            } else if (renaming < 4) {
+                object.put(first + "_" + second + "_" + index, value);
+            } else if (renaming < 6) {
+                object.put(abbreviate(first) + "_" + abbreviate(second) + index, value);
+            } else {
+                object.put(first + capitalize(second) + index, value);
+            }
+        }
+
+        private static String abbreviate(String word) {
+            return ABBREVIATIONS.getOrDefault(word, word);
+        }
+
+        private static String capitalize(String word) {
+            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.mappingagent.benchmark;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.service.MappingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SchemaParsingBenchmark {
+
+    @Param({"WIDE", "DEEP", "ARRAYS"})
+    public SchemaGenerator.Shape shape;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private MappingService mappingService;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        mappingService = Fixtures.mappingService();
+        json = SchemaGenerator.source(shape, size);
+    }
+
+    @Benchmark
+    public JsonNode parseJsonSchema() throws Exception {
+        return mappingService.parseJsonSchema(json);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.mappingagent.benchmark;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.service.EnhancedSimilarityService;
+import com.example.mappingagent.service.SchemaParser;
+import com.example.mappingagent.service.SimilarityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SimilarityBenchmark {
+
+    @Param({"WIDE", "DEEP", "ARRAYS"})
+    public SchemaGenerator.Shape shape;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private SimilarityService similarityService;
+    private EnhancedSimilarityService enhancedSimilarityService;
+    private JsonNode source;
+    private JsonNode target;
+
+    @Setup
+    public void setUp() throws IOException {
+        similarityService = Fixtures.similarityService();
+        enhancedSimilarityService = Fixtures.enhancedSimilarityService();
+        SchemaParser parser = Fixtures.schemaParser();
+        source = parser.parse(SchemaGenerator.source(shape, size));
+        target = parser.parse(SchemaGenerator.target(shape, size));
+    }
+
+    @Benchmark
+    public double calculateStructureSimilarity() {
+        return similarityService.calculateStructureSimilarity(source, target);
+    }
+
+    // Top-level fields of both documents; the stub LLM finds nothing, so the similarity pass does all the work
+    @Benchmark
+    public Map<String, String> findBestMatches() {
+        return enhancedSimilarityService.findBestMatches(children(source), children(target)).matches();
+    }
+
+    private static List<JsonNode> children(JsonNode node) {
+        return node.getChildren() != null ? node.getChildren() : List.of();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.mappingagent.benchmark;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.service.FieldGroup;
+import com.example.mappingagent.service.FieldMatches;
+import com.example.mappingagent.service.LLMService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.ChatClient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Never calls a model and finds no semantic matches, so benchmarks measure only the local matching passes
+final class StubLLMService extends LLMService {
+
+    StubLLMService() {
+        super(Mockito.mock(ChatClient.Builder.class), null, new ObjectMapper(), Fixtures.metrics(), null, 20, 400);
+    }
+
+    @Override
+    public FieldMatches findSemanticMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+        return FieldMatches.of(Map.of());
+    }
+
+    @Override
+    public List<FieldMatches> findSemanticMatchesBatch(List<FieldGroup> groups) {
+        return Collections.nCopies(groups.size(), FieldMatches.of(Map.of()));
+    }
+}
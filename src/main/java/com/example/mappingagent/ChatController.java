@@ -1,5 +1,6 @@
 package com.example.mappingagent;
 
+import com.example.mappingagent.service.LlmStreamingClient;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -8,18 +9,19 @@ import org.springframework.web.bind.annotation.RestController;
 public class ChatController {
 
     private final ChatClient chatClient;
+    private final LlmStreamingClient llmClient;
 
-    public ChatController(ChatClient.Builder builder) {
+    public ChatController(ChatClient.Builder builder, LlmStreamingClient llmClient) {
         this.chatClient = builder.build();
-        System.out.println(this.chatClient);
+        this.llmClient = llmClient;
     }
 
     @GetMapping("")
     public String home() {
-        return chatClient.prompt()
+        return llmClient.stream("joke", () -> chatClient.prompt()
                 .user("Tell me a dad joke about Technology")
-                .call()
-                .content();
+                .stream()
+                .content());
     }
 
 }
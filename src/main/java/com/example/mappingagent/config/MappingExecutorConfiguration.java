@@ -0,0 +1,26 @@
+package com.example.mappingagent.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class MappingExecutorConfiguration {
+
+    // Runs subtree matching for concurrent traversals; LLM concurrency itself is capped in LlmStreamingClient
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService mappingExecutor(@Value("${mapping.concurrent.threads:16}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "mapping-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+}
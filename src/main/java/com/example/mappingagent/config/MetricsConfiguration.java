@@ -0,0 +1,60 @@
+package com.example.mappingagent.config;
+
+import com.example.mappingagent.service.LlmGateway;
+import com.example.mappingagent.service.MappingResultCache;
+import com.example.mappingagent.service.OllamaBackendPool;
+import com.example.mappingagent.service.SemanticMatchCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfiguration {
+
+    // Hit and miss totals of both caches, read from their stats when the registry is scraped
+    @Bean
+    public MeterBinder mappingCacheMetrics(SemanticMatchCache semanticMatchCache, MappingResultCache resultCache) {
+        return registry -> {
+            FunctionCounter.builder("mapping.cache.requests", semanticMatchCache, cache -> cache.stats().hits())
+                    .tags("cache", "semantic", "result", "hit").register(registry);
+            FunctionCounter.builder("mapping.cache.requests", semanticMatchCache, cache -> cache.stats().misses())
+                    .tags("cache", "semantic", "result", "miss").register(registry);
+            FunctionCounter.builder("mapping.cache.requests", resultCache, cache -> cache.stats().hits())
+                    .tags("cache", "result", "result", "hit").register(registry);
+            FunctionCounter.builder("mapping.cache.requests", resultCache, cache -> cache.stats().misses())
+                    .tags("cache", "result", "result", "miss").register(registry);
+        };
+    }
+
+    // Current limit, load and queues of the LLM gateway, and how many calls it spared the model
+    @Bean
+    public MeterBinder llmGatewayMetrics(LlmGateway gateway) {
+        return registry -> {
+            Gauge.builder("mapping.llm.limit", gateway, g -> g.stats().limit()).register(registry);
+            Gauge.builder("mapping.llm.in-flight", gateway, g -> g.stats().inFlight()).register(registry);
+            Gauge.builder("mapping.llm.queued", gateway, g -> g.stats().interactiveQueued())
+                    .tags("lane", "interactive").register(registry);
+            Gauge.builder("mapping.llm.queued", gateway, g -> g.stats().bulkQueued())
+                    .tags("lane", "bulk").register(registry);
+            Gauge.builder("mapping.llm.baseline", gateway, g -> g.stats().baselineMillis())
+                    .baseUnit("milliseconds").register(registry);
+            FunctionCounter.builder("mapping.llm.coalesced", gateway, g -> g.stats().coalesced()).register(registry);
+            FunctionCounter.builder("mapping.llm.rejected", gateway, g -> g.stats().rejected()).register(registry);
+        };
+    }
+
+    // Load, health and latency EWMA of every Ollama node
+    @Bean
+    public MeterBinder ollamaPoolMetrics(OllamaBackendPool pool) {
+        return registry -> pool.nodes().forEach(node -> {
+            Gauge.builder("mapping.ollama.outstanding", node, OllamaBackendPool.Node::outstanding)
+                    .tags("node", node.name()).register(registry);
+            Gauge.builder("mapping.ollama.healthy", node, n -> n.healthy() ? 1 : 0)
+                    .tags("node", node.name()).register(registry);
+            Gauge.builder("mapping.ollama.latency", node, OllamaBackendPool.Node::latencyMillis)
+                    .tags("node", node.name()).baseUnit("milliseconds").register(registry);
+        });
+    }
+}
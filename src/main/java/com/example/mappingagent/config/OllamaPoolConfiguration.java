@@ -0,0 +1,23 @@
+package com.example.mappingagent.config;
+
+import com.example.mappingagent.service.OllamaBackendPool;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class OllamaPoolConfiguration {
+
+    // Replaces the single-host client of the Ollama auto-configuration; chat and embedding models both use it
+    @Bean
+    public OllamaApi ollamaApi(OllamaBackendPool pool,
+                               ObjectProvider<RestClient.Builder> restClientBuilder,
+                               ObjectProvider<WebClient.Builder> webClientBuilder) {
+        return new OllamaApi(pool.baseUrl(),
+                restClientBuilder.getIfAvailable(RestClient::builder).requestInterceptor(pool::route),
+                webClientBuilder.getIfAvailable(WebClient::builder).filter(pool::route));
+    }
+}
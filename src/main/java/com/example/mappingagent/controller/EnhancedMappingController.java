@@ -1,21 +1,42 @@
 package com.example.mappingagent.controller;
 
+import com.example.mappingagent.model.BulkMappingResult;
 import com.example.mappingagent.model.JsonNode;
 import com.example.mappingagent.model.MappingConfiguration;
+import com.example.mappingagent.model.MappingSummary;
 import com.example.mappingagent.service.EnhancedMappingService;
+import com.example.mappingagent.service.SchemaPair;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/mapping")
 public class EnhancedMappingController {
 
+    private static final Logger log = LoggerFactory.getLogger(EnhancedMappingController.class);
+
     private final EnhancedMappingService mappingService;
+    private final ObjectMapper objectMapper;
 
-    public EnhancedMappingController(EnhancedMappingService mappingService) {
+    public EnhancedMappingController(EnhancedMappingService mappingService, ObjectMapper objectMapper) {
         this.mappingService = mappingService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/generate-enhanced")
@@ -26,6 +47,111 @@ public class EnhancedMappingController {
         return mappingService.generateMapping(sourceSchema, targetSchema);
     }
 
+    /**
+     * Re-maps after a schema change, carrying forward the rules of {@code previous} for every subtree that did
+     * not change. Without {@code previous} or either old schema everything is regenerated.
+     */
+    @PostMapping("/generate-enhanced/incremental")
+    public MappingConfiguration remapEnhancedMapping(@RequestBody RemapRequest request) throws Exception {
+        if (request.getSourceJson() == null || request.getTargetJson() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing \"sourceJson\" or \"targetJson\"");
+        }
+        return mappingService.remapMapping(
+                request.getPrevious(),
+                parseOptional(request.getPreviousSourceJson()),
+                parseOptional(request.getPreviousTargetJson()),
+                mappingService.parseJsonSchema(request.getSourceJson()),
+                mappingService.parseJsonSchema(request.getTargetJson()));
+    }
+
+    private JsonNode parseOptional(String json) throws Exception {
+        return json != null ? mappingService.parseJsonSchema(json) : null;
+    }
+
+    /**
+     * Records a generated (and possibly corrected) mapping as accepted. Field name pairs of its rules with high
+     * confidence are remembered as synonyms and matched locally from then on.
+     */
+    @PostMapping("/accept")
+    public Map<String, Integer> acceptMapping(@RequestBody MappingConfiguration configuration) {
+        return Map.of("learned", mappingService.acceptMapping(configuration));
+    }
+
+    /**
+     * Streams the mapping as NDJSON: one {@code rule} event per MappingRule as soon as it is generated, then a
+     * {@code summary} event with the overall confidence (or an {@code error} event if generation fails).
+     */
+    @PostMapping(value = "/generate-enhanced/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamEnhancedMapping(@RequestBody MappingRequest request) throws Exception {
+        JsonNode sourceSchema = mappingService.parseJsonSchema(request.getSourceJson());
+        JsonNode targetSchema = mappingService.parseJsonSchema(request.getTargetJson());
+
+        return out -> {
+            MappingSummary summary;
+            try {
+                summary = mappingService.streamMapping(sourceSchema, targetSchema,
+                        rule -> writeEvent(out, new StreamEvent("rule", rule)));
+            } catch (UncheckedIOException e) {
+                // The client went away; stop generating rules nobody will read
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                log.error("Streaming mapping failed", e);
+                writeEvent(out, new StreamEvent("error", Map.of("message", String.valueOf(e.getMessage()))));
+                return;
+            }
+            writeEvent(out, new StreamEvent("summary", summary));
+        };
+    }
+
+    /**
+     * Maps every source/target pair in the request as one job, sharing parsing and LLM lookups across pairs.
+     * Results come back in request order, each tagged with the index of its pair.
+     */
+    @PostMapping("/generate-enhanced/batch")
+    public List<BulkMappingResult> generateEnhancedMappings(@RequestBody List<MappingRequest> requests) {
+        List<BulkMappingResult> results = new ArrayList<>(requests.size());
+        mappingService.generateMappings(toSchemaPairs(requests), results::add);
+        return results;
+    }
+
+    /**
+     * Bulk variant of the NDJSON stream: one {@code mapping} event per pair as soon as its rules are generated.
+     */
+    @PostMapping(value = "/generate-enhanced/batch/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamEnhancedMappings(@RequestBody List<MappingRequest> requests) {
+        List<SchemaPair> pairs = toSchemaPairs(requests);
+
+        return out -> {
+            try {
+                mappingService.generateMappings(pairs,
+                        result -> writeEvent(out, new StreamEvent("mapping", result)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                log.error("Bulk mapping failed", e);
+                writeEvent(out, new StreamEvent("error", Map.of("message", String.valueOf(e.getMessage()))));
+            }
+        };
+    }
+
+    private static List<SchemaPair> toSchemaPairs(List<MappingRequest> requests) {
+        return requests.stream()
+                .map(request -> new SchemaPair(request.getSourceJson(), request.getTargetJson()))
+                .toList();
+    }
+
+    private void writeEvent(OutputStream out, StreamEvent event) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(event));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record StreamEvent(String event, Object data) {}
+
     // ... (keep the existing MappingRequest class)
     public static class MappingRequest {
         private String sourceJson;
@@ -48,4 +174,34 @@ public class EnhancedMappingController {
             this.targetJson = targetJson;
         }
     }
-}
\ No newline at end of file
+
+    public static class RemapRequest extends MappingRequest {
+        private MappingConfiguration previous;
+        private String previousSourceJson;
+        private String previousTargetJson;
+
+        public MappingConfiguration getPrevious() {
+            return previous;
+        }
+
+        public void setPrevious(MappingConfiguration previous) {
+            this.previous = previous;
+        }
+
+        public String getPreviousSourceJson() {
+            return previousSourceJson;
+        }
+
+        public void setPreviousSourceJson(String previousSourceJson) {
+            this.previousSourceJson = previousSourceJson;
+        }
+
+        public String getPreviousTargetJson() {
+            return previousTargetJson;
+        }
+
+        public void setPreviousTargetJson(String previousTargetJson) {
+            this.previousTargetJson = previousTargetJson;
+        }
+    }
+}
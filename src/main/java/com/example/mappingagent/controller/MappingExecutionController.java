@@ -0,0 +1,158 @@
+package com.example.mappingagent.controller;
+
+import com.example.mappingagent.execution.BulkTransformer;
+import com.example.mappingagent.execution.MappingEngine;
+import com.example.mappingagent.execution.MappingPlan;
+import com.example.mappingagent.model.BulkTransformSummary;
+import com.example.mappingagent.model.MappingConfiguration;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/mapping")
+public class MappingExecutionController {
+
+    private final MappingEngine mappingEngine;
+    private final BulkTransformer bulkTransformer;
+    private final ObjectMapper objectMapper;
+
+    public MappingExecutionController(MappingEngine mappingEngine, BulkTransformer bulkTransformer,
+                                      ObjectMapper objectMapper) {
+        this.mappingEngine = mappingEngine;
+        this.bulkTransformer = bulkTransformer;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Applies a mapping to documents without buffering the request. The body is an object whose
+     * {@code configuration} field must come first, followed by either {@code document} (answered with the mapped
+     * document) or {@code documents} (an array, answered with an array of mapped documents written as they are
+     * read).
+     */
+    @PostMapping(value = "/apply", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void applyMapping(InputStream body, HttpServletResponse response) throws IOException {
+        try (JsonParser parser = mappingEngine.getJsonFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw badRequest("Expected a JSON object");
+            }
+
+            MappingPlan plan = null;
+            boolean written = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "configuration" -> plan = compile(objectMapper.readValue(parser, MappingConfiguration.class));
+                    case "document", "documents" -> {
+                        if (plan == null) {
+                            throw badRequest("\"configuration\" must come before \"" + field + "\"");
+                        }
+                        if (written) {
+                            throw badRequest("Only one of \"document\" and \"documents\" is allowed");
+                        }
+                        writeDocuments(parser, plan, field.equals("documents"), response);
+                        written = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (!written) {
+                throw badRequest("Missing \"document\" or \"documents\"");
+            }
+        }
+    }
+
+    /**
+     * Transforms an NDJSON file under {@code mapping.bulk.base-dir} into another one, one output line per input
+     * record. Progress is published as {@code mapping.bulk.*} metrics while the run is going.
+     */
+    @PostMapping("/apply/bulk")
+    public BulkTransformSummary applyMappingToFile(@RequestBody BulkTransformRequest request) throws IOException {
+        MappingPlan plan = compile(request.getConfiguration());
+        try {
+            return bulkTransformer.transformFiles(plan, request.getInputFile(), request.getOutputFile());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e.getMessage());
+        }
+    }
+
+    private MappingPlan compile(MappingConfiguration configuration) {
+        if (configuration == null) {
+            throw badRequest("Missing \"configuration\"");
+        }
+        try {
+            return mappingEngine.compile(configuration);
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e.getMessage());
+        }
+    }
+
+    private void writeDocuments(JsonParser parser, MappingPlan plan, boolean many, HttpServletResponse response)
+            throws IOException {
+        if (many && parser.currentToken() != JsonToken.START_ARRAY) {
+            throw badRequest("\"documents\" must be an array");
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = mappingEngine.getJsonFactory().createGenerator(response.getOutputStream())) {
+            if (!many) {
+                plan.transform(parser, generator);
+                return;
+            }
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                plan.transform(parser, generator);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static ResponseStatusException badRequest(String message) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+    }
+
+    public static class BulkTransformRequest {
+        private MappingConfiguration configuration;
+        private String inputFile;
+        private String outputFile;
+
+        public MappingConfiguration getConfiguration() {
+            return configuration;
+        }
+
+        public void setConfiguration(MappingConfiguration configuration) {
+            this.configuration = configuration;
+        }
+
+        public String getInputFile() {
+            return inputFile;
+        }
+
+        public void setInputFile(String inputFile) {
+            this.inputFile = inputFile;
+        }
+
+        public String getOutputFile() {
+            return outputFile;
+        }
+
+        public void setOutputFile(String outputFile) {
+            this.outputFile = outputFile;
+        }
+    }
+}
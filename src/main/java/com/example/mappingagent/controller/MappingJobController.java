@@ -0,0 +1,79 @@
+package com.example.mappingagent.controller;
+
+import com.example.mappingagent.model.JobStatus;
+import com.example.mappingagent.model.MappingJob;
+import com.example.mappingagent.service.MappingJobService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Submit/poll/result API for enhanced mappings. Submitting returns at once with the job status; clients poll
+ * {@code /jobs/{id}} and fetch the configuration from {@code /jobs/{id}/result} once the job has succeeded.
+ */
+@RestController
+@RequestMapping("/api/mapping/jobs")
+public class MappingJobController {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final MappingJobService jobService;
+
+    public MappingJobController(MappingJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submitJob(@RequestBody EnhancedMappingController.MappingRequest request) {
+        MappingJob job;
+        try {
+            job = jobService.submit(request.getSourceJson(), request.getTargetJson());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(Map.of("message", "Too many mapping jobs queued, retry later"));
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/mapping/jobs/" + job.getId()))
+                .body(JobStatusResponse.of(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobStatusResponse> getJob(@PathVariable String id) {
+        MappingJob job = jobService.getJob(id);
+        return job != null ? ResponseEntity.ok(JobStatusResponse.of(job)) : ResponseEntity.notFound().build();
+    }
+
+    // 409 with the job status while the job is not done or has failed
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getResult(@PathVariable String id) {
+        MappingJob job = jobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != JobStatus.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(JobStatusResponse.of(job));
+        }
+        return ResponseEntity.ok(job.getConfiguration());
+    }
+
+    // Job state without the configuration, which can be large
+    record JobStatusResponse(String id, JobStatus status, Instant submittedAt, Instant startedAt,
+                             Instant finishedAt, String error) {
+        static JobStatusResponse of(MappingJob job) {
+            return new JobStatusResponse(job.getId(), job.getStatus(), job.getSubmittedAt(), job.getStartedAt(),
+                    job.getFinishedAt(), job.getError());
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.BulkTransformSummary;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs NDJSON files through a {@link MappingPlan}. The input is memory-mapped in line-aligned chunks, and the
+ * chunks are transformed in parallel on a fixed pool of workers. Their output is written in input order. At most
+ * {@code maxChunksInFlight} chunks are mapped or buffered at once, so heap use stays around that many chunk
+ * outputs no matter how large the file is.
+ */
+@Component
+public class BulkTransformer {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkTransformer.class);
+
+    private final JsonFactory jsonFactory;
+    private final Path baseDir;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final ExecutorService workers;
+
+    private final AtomicInteger activeTransforms = new AtomicInteger();
+    private final Counter records;
+    private final Counter failedRecords;
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
+
+    public BulkTransformer(MappingEngine mappingEngine,
+                           MeterRegistry meterRegistry,
+                           @Value("${mapping.bulk.base-dir:}") String baseDir,
+                           @Value("${mapping.bulk.threads:0}") int threads,
+                           @Value("${mapping.bulk.chunk-size:8MB}") DataSize chunkSize,
+                           @Value("${mapping.bulk.max-chunks-in-flight:0}") int maxChunksInFlight) {
+        this.jsonFactory = mappingEngine.getJsonFactory();
+        this.baseDir = baseDir.isBlank() ? null : Path.of(baseDir).toAbsolutePath().normalize();
+        this.chunkSize = (int) Math.min(Math.max(chunkSize.toBytes(), 1), Integer.MAX_VALUE);
+
+        int workerCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.maxChunksInFlight = maxChunksInFlight > 0 ? maxChunksInFlight : 2 * workerCount;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-transform-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.records = Counter.builder("mapping.bulk.records").tag("outcome", "transformed")
+                .description("NDJSON records transformed by bulk runs").register(meterRegistry);
+        this.failedRecords = Counter.builder("mapping.bulk.records").tag("outcome", "failed")
+                .description("NDJSON records that could not be parsed").register(meterRegistry);
+        this.bytesRead = Counter.builder("mapping.bulk.bytes.read").baseUnit("bytes")
+                .description("Input bytes consumed by bulk runs").register(meterRegistry);
+        this.bytesWritten = Counter.builder("mapping.bulk.bytes.written").baseUnit("bytes")
+                .description("Output bytes produced by bulk runs").register(meterRegistry);
+        meterRegistry.gauge("mapping.bulk.active", activeTransforms, AtomicInteger::get);
+    }
+
+    /**
+     * Same as {@link #transform} with both paths resolved against {@code mapping.bulk.base-dir}.
+     *
+     * @throws IllegalStateException if no base directory is configured
+     * @throws IllegalArgumentException if a path points outside the base directory
+     */
+    public BulkTransformSummary transformFiles(MappingPlan plan, String input, String output) throws IOException {
+        if (baseDir == null) {
+            throw new IllegalStateException("Bulk file transforms are disabled; set mapping.bulk.base-dir");
+        }
+        return transform(plan, resolve(input), resolve(output));
+    }
+
+    private Path resolve(String file) {
+        Path path = baseDir.resolve(file).normalize();
+        if (!path.startsWith(baseDir)) {
+            throw new IllegalArgumentException("Path is outside the bulk base directory: " + file);
+        }
+        return path;
+    }
+
+    /**
+     * Transforms every line of {@code input} and writes one line per record to {@code output}, replacing it. Blank
+     * lines are skipped, and lines that are not exactly one valid JSON value are counted as failed and left out.
+     * The output is written to a temporary file next to {@code output} and only moved over it once every chunk
+     * succeeded, so a failed run leaves the previous file untouched.
+     */
+    public BulkTransformSummary transform(MappingPlan plan, Path input, Path output) throws IOException {
+        long started = System.nanoTime();
+        BulkTransformSummary summary = new BulkTransformSummary();
+        Path tmp = Files.createTempFile(output.toAbsolutePath().getParent(), output.getFileName() + ".", ".tmp");
+        ArrayDeque<CompletableFuture<ChunkOutput>> inFlight = new ArrayDeque<>();
+        activeTransforms.incrementAndGet();
+        try {
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    ByteBuffer chunk = nextChunk(in, position, size);
+                    long chunkStart = position;
+                    position += chunk.remaining();
+
+                    if (inFlight.size() >= maxChunksInFlight) {
+                        writeChunk(inFlight.poll(), out, summary);
+                    }
+                    inFlight.add(CompletableFuture.supplyAsync(() -> transformChunk(plan, chunk, chunkStart), workers));
+                }
+                while (!inFlight.isEmpty()) {
+                    writeChunk(inFlight.poll(), out, summary);
+                }
+                summary.setBytesRead(size);
+            }
+            Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Only left after a failure: chunks not started yet are skipped, running ones finish unwritten
+            inFlight.forEach(pending -> pending.cancel(false));
+            activeTransforms.decrementAndGet();
+            deleteQuietly(tmp);
+        }
+        summary.setElapsedMillis((System.nanoTime() - started) / 1_000_000);
+        return summary;
+    }
+
+    // Maps up to chunkSize bytes ending at a line break; a longer line widens the chunk until it fits
+    private ByteBuffer nextChunk(FileChannel in, long position, long size) throws IOException {
+        long length = Math.min(chunkSize, size - position);
+        while (true) {
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length == size) {
+                return window;
+            }
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (window.get(i) == '\n') {
+                    return window.slice(0, i + 1);
+                }
+            }
+            if (length == Integer.MAX_VALUE) {
+                throw new IOException("Line longer than 2 GB at byte " + position);
+            }
+            length = Math.min(Math.min(length * 2, Integer.MAX_VALUE), size - position);
+        }
+    }
+
+    private ChunkOutput transformChunk(MappingPlan plan, ByteBuffer chunk, long chunkStart) {
+        ChunkOutput output = new ChunkOutput(chunk.remaining());
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            int limit = chunk.limit();
+            int lineStart = 0;
+            for (int i = 0; i <= limit; i++) {
+                if (i < limit && chunk.get(i) != '\n') {
+                    continue;
+                }
+                if (!isBlank(chunk, lineStart, i)) {
+                    generator.flush();
+                    int mark = output.size();
+                    try (JsonParser parser = jsonFactory.createParser(
+                            new ByteBufferBackedInputStream(chunk.slice(lineStart, i - lineStart)))) {
+                        plan.transform(parser, generator);
+                        // The parser stops after the first value, so anything behind it is only seen here
+                        if (parser.nextToken() != null) {
+                            throw new JsonParseException(parser, "Unexpected content after the record");
+                        }
+                        generator.writeRaw('\n');
+                        output.records++;
+                    } catch (IOException e) {
+                        // Trailing content is found after the record was written; drop it again
+                        generator.flush();
+                        output.truncate(mark);
+                        if (output.failed++ == 0) {
+                            log.warn("Skipping invalid record at byte {}: {}", chunkStart + lineStart, e.getMessage());
+                        }
+                    }
+                }
+                lineStart = i + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output;
+    }
+
+    private static boolean isBlank(ByteBuffer chunk, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = chunk.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeChunk(CompletableFuture<ChunkOutput> pending, FileChannel out, BulkTransformSummary summary)
+            throws IOException {
+        ChunkOutput output;
+        try {
+            output = pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+        long written = output.writeTo(out);
+
+        summary.setRecords(summary.getRecords() + output.records);
+        summary.setFailedRecords(summary.getFailedRecords() + output.failed);
+        summary.setBytesWritten(summary.getBytesWritten() + written);
+        records.increment(output.records);
+        failedRecords.increment(output.failed);
+        bytesRead.increment(output.inputBytes);
+        bytesWritten.increment(written);
+    }
+
+    // Does nothing after a successful run, which moved the file away
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete temporary bulk output {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // Output of one chunk, written to the channel straight from the internal array
+    private static final class ChunkOutput extends ByteArrayOutputStream {
+        final int inputBytes;
+        long records;
+        long failed;
+
+        ChunkOutput(int inputBytes) {
+            super(Math.max(32, inputBytes));
+            this.inputBytes = inputBytes;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+
+        long writeTo(WritableByteChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return count;
+        }
+    }
+}
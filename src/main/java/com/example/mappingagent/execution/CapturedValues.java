@@ -0,0 +1,117 @@
+package com.example.mappingagent.execution;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+// Capturing source values and writing them back out with a transformation; shared by both plan tiers
+final class CapturedValues {
+
+    private CapturedValues() {
+    }
+
+    // Scalars become their token and text, objects and arrays a TokenBuffer; expects the parser on the first token
+    static Object capture(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isScalarValue()) {
+            return new Scalar(token, parser.getText());
+        }
+        TokenBuffer buffer = new TokenBuffer(parser);
+        buffer.copyCurrentStructure(parser);
+        return buffer;
+    }
+
+    static void write(Object value, Transformation transformation, JsonGenerator generator, JsonFactory jsonFactory)
+            throws IOException {
+        if (value instanceof Scalar scalar) {
+            writeScalar(scalar, transformation, generator);
+            return;
+        }
+
+        TokenBuffer buffer = (TokenBuffer) value;
+        switch (transformation) {
+            case STRING -> {
+                StringWriter json = new StringWriter();
+                try (JsonGenerator text = jsonFactory.createGenerator(json)) {
+                    copy(buffer, text);
+                }
+                generator.writeString(json.toString());
+            }
+            // Objects and arrays have no number or boolean form
+            case NUMBER, BOOLEAN -> generator.writeNull();
+            default -> copy(buffer, generator);
+        }
+    }
+
+    private static void copy(TokenBuffer buffer, JsonGenerator generator) throws IOException {
+        try (JsonParser replay = buffer.asParser()) {
+            replay.nextToken();
+            generator.copyCurrentStructure(replay);
+        }
+    }
+
+    private static void writeScalar(Scalar scalar, Transformation transformation, JsonGenerator generator)
+            throws IOException {
+        JsonToken token = scalar.token();
+        if (token == JsonToken.VALUE_NULL) {
+            generator.writeNull();
+            return;
+        }
+        switch (transformation) {
+            case STRING -> generator.writeString(scalar.text());
+            case NUMBER -> {
+                if (token.isNumeric()) {
+                    generator.writeNumber(scalar.text());
+                } else if (token.isBoolean()) {
+                    generator.writeNumber(token == JsonToken.VALUE_TRUE ? 1 : 0);
+                } else {
+                    BigDecimal number = parseNumber(scalar.text());
+                    if (number != null) {
+                        generator.writeNumber(number);
+                    } else {
+                        generator.writeNull();
+                    }
+                }
+            }
+            case BOOLEAN -> {
+                if (token.isBoolean()) {
+                    generator.writeBoolean(token == JsonToken.VALUE_TRUE);
+                } else if (token.isNumeric()) {
+                    BigDecimal number = parseNumber(scalar.text());
+                    generator.writeBoolean(number != null && number.signum() != 0);
+                } else if ("true".equalsIgnoreCase(scalar.text().trim())) {
+                    generator.writeBoolean(true);
+                } else if ("false".equalsIgnoreCase(scalar.text().trim())) {
+                    generator.writeBoolean(false);
+                } else {
+                    generator.writeNull();
+                }
+            }
+            default -> {
+                switch (token) {
+                    case VALUE_STRING -> generator.writeString(scalar.text());
+                    case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> generator.writeNumber(scalar.text());
+                    case VALUE_TRUE, VALUE_FALSE -> generator.writeBoolean(token == JsonToken.VALUE_TRUE);
+                    default -> generator.writeNull();
+                }
+            }
+        }
+    }
+
+    private static BigDecimal parseNumber(String text) {
+        try {
+            return new BigDecimal(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // A captured scalar; numbers keep their original text so no precision is lost
+    record Scalar(JsonToken token, String text) {}
+}
@@ -0,0 +1,185 @@
+package com.example.mappingagent.execution;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of the transforms generated by {@link PlanBytecodeCompiler}. Subclasses only implement the
+ * straight-line {@link #read} and {@link #write} for one plan; the helpers below are what the generated code calls.
+ * Values are kept in the same {@link Scope}s as in the interpreter, one per document and one per element of a
+ * paired source array. Instances are stateless and can be shared between threads.
+ */
+abstract class CompiledTransform {
+
+    private static final Transformation[] TRANSFORMATIONS = Transformation.values();
+
+    private final JsonFactory jsonFactory;
+    private final int slotCount;
+    private final int arrayCount;
+    private final int levels;
+
+    protected CompiledTransform(JsonFactory jsonFactory, int slotCount, int arrayCount, int levels) {
+        this.jsonFactory = jsonFactory;
+        this.slotCount = slotCount;
+        this.arrayCount = arrayCount;
+        this.levels = levels;
+    }
+
+    // Same contract as MappingPlan#transform(JsonParser, JsonGenerator)
+    final void transform(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (parser.currentToken() == null && parser.nextToken() == null) {
+            throw new JsonParseException(parser, "No JSON content to transform");
+        }
+        Scope[] stack = new Scope[levels];
+        stack[0] = new Scope(slotCount, arrayCount);
+        read(parser, stack);
+        write(generator, stack);
+    }
+
+    protected abstract void read(JsonParser parser, Scope[] stack) throws IOException;
+
+    protected abstract void write(JsonGenerator generator, Scope[] stack) throws IOException;
+
+    // Writes the value under name (no name inside arrays or at the root); false if there is no value
+    protected final boolean writeValue(JsonGenerator generator, String name, Object value, int transformation)
+            throws IOException {
+        if (value == null) {
+            return false;
+        }
+        if (name != null) {
+            generator.writeFieldName(name);
+        }
+        CapturedValues.write(value, TRANSFORMATIONS[transformation], generator, jsonFactory);
+        return true;
+    }
+
+    // Same for targets that contain arrays, where field names and containers are only written once a value is
+    protected final boolean writeValue(LazyGenerator out, String name, Object value, int transformation)
+            throws IOException {
+        if (value == null) {
+            return false;
+        }
+        out.field(name);
+        CapturedValues.write(value, TRANSFORMATIONS[transformation], out.flush(), jsonFactory);
+        return true;
+    }
+
+    static LazyGenerator lazy(JsonGenerator generator) {
+        return new LazyGenerator(generator);
+    }
+
+    // The document's value when nothing was mapped
+    static void writeEmpty(JsonGenerator generator, boolean array) throws IOException {
+        if (array) {
+            generator.writeStartArray();
+            generator.writeEndArray();
+        } else {
+            generator.writeStartObject();
+            generator.writeEndObject();
+        }
+    }
+
+    static Object[] values(Scope[] stack, int level) {
+        return stack[level].values;
+    }
+
+    static Object capture(JsonParser parser) throws IOException {
+        return CapturedValues.capture(parser);
+    }
+
+    // The first rule that finds a value keeps it
+    static void store(Scope[] stack, int level, int slot, Object value) {
+        Object[] values = stack[level].values;
+        if (values[slot] == null) {
+            values[slot] = value;
+        }
+    }
+
+    // A parser over a captured object or array, on its first token; null for scalars
+    static JsonParser replay(Object value) throws IOException {
+        if (value instanceof TokenBuffer buffer) {
+            JsonParser replay = buffer.asParser();
+            replay.nextToken();
+            return replay;
+        }
+        return null;
+    }
+
+    // Skips anything but an object, leaving the parser on its last token
+    static boolean enterObject(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
+
+    static boolean isArray(JsonParser parser) {
+        return parser.currentToken() == JsonToken.START_ARRAY;
+    }
+
+    static boolean nextElement(JsonParser parser) throws IOException {
+        return MappingPlan.nextElement(parser);
+    }
+
+    // Skips the rest of an array; of a source array no rule pairs with a target array only the first element is read
+    static void skipElements(JsonParser parser) throws IOException {
+        while (MappingPlan.nextElement(parser)) {
+            parser.skipChildren();
+        }
+    }
+
+    // The element list of a paired source array, stored in the scope that encloses it
+    static List<Scope> startElements(Scope[] stack, int level, int arrayIndex) {
+        List<Scope> elements = new ArrayList<>();
+        stack[level].arrays[arrayIndex] = elements;
+        return elements;
+    }
+
+    // A new element scope at stack[level], for the element the parser is on
+    static void addElement(Scope[] stack, int level, List<Scope> elements, int slotCount, int arrayCount) {
+        Scope element = new Scope(slotCount, arrayCount);
+        elements.add(element);
+        stack[level] = element;
+    }
+
+    // The elements of a paired source array as read, or null if the document did not have it
+    static List<Scope> elements(Scope[] stack, int level, int arrayIndex) {
+        return stack[level].arrays[arrayIndex];
+    }
+
+    // The next field name with the parser moved on to its value, or null at the end of the object
+    static String nextField(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            return null;
+        }
+        String name = parser.currentName();
+        parser.nextToken();
+        return name;
+    }
+
+    static void startObject(JsonGenerator generator, String name) throws IOException {
+        if (name != null) {
+            generator.writeFieldName(name);
+        }
+        generator.writeStartObject();
+    }
+
+    // Whether any of slots[from, to) holds a value, i.e. whether the target subtree owning them writes anything
+    static boolean anyValue(Object[] slots, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (slots[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
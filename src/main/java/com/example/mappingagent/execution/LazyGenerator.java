@@ -0,0 +1,74 @@
+package com.example.mappingagent.execution;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defers field names and container starts until a value is actually written below them, so target objects and
+ * arrays without any mapped data are left out instead of being written empty.
+ */
+final class LazyGenerator {
+
+    private static final Object START_OBJECT = new Object();
+    private static final Object START_ARRAY = new Object();
+
+    private final JsonGenerator generator;
+    private final List<Object> pending = new ArrayList<>();
+
+    LazyGenerator(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    int mark() {
+        return pending.size();
+    }
+
+    void field(String name) {
+        if (name != null) {
+            pending.add(name);
+        }
+    }
+
+    void startObject() {
+        pending.add(START_OBJECT);
+    }
+
+    void startArray() {
+        pending.add(START_ARRAY);
+    }
+
+    // Writes everything deferred so far and returns the generator for the value itself
+    JsonGenerator flush() throws IOException {
+        for (Object entry : pending) {
+            if (entry == START_OBJECT) {
+                generator.writeStartObject();
+            } else if (entry == START_ARRAY) {
+                generator.writeStartArray();
+            } else {
+                generator.writeFieldName((String) entry);
+            }
+        }
+        pending.clear();
+        return generator;
+    }
+
+    /**
+     * Closes the container opened after {@code mark}. Returns false, dropping the deferred start, if nothing was
+     * written inside it.
+     */
+    boolean end(int mark, boolean array) throws IOException {
+        if (pending.size() > mark) {
+            pending.subList(mark, pending.size()).clear();
+            return false;
+        }
+        if (array) {
+            generator.writeEndArray();
+        } else {
+            generator.writeEndObject();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.MappingConfiguration;
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Library entry point for executing mappings: compile a configuration once, then transform any number of
+ * documents with the resulting {@link MappingPlan}. Plans are cached by a hash of their rules, so repeated
+ * requests with the same configuration share one plan and its application count towards the compiled tier.
+ */
+@Component
+public class MappingEngine {
+
+    private final JsonFactory jsonFactory;
+    private final long compileThreshold;
+    private final int planCacheSize;
+
+    private final Map<String, MappingPlan> plans;
+
+    public MappingEngine(ObjectMapper objectMapper,
+                         @Value("${mapping.execution.compile-threshold:10000}") long compileThreshold,
+                         @Value("${mapping.execution.plan-cache-size:256}") int planCacheSize) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.compileThreshold = compileThreshold;
+        this.planCacheSize = planCacheSize;
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappingPlan> eldest) {
+                return size() > MappingEngine.this.planCacheSize;
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rule uses an unsupported transformation
+     */
+    public MappingPlan compile(MappingConfiguration configuration) {
+        List<MappingRule> rules = configuration.getRules() != null ? configuration.getRules() : List.of();
+        if (planCacheSize <= 0) {
+            return PlanCompiler.compile(rules, jsonFactory, compileThreshold);
+        }
+
+        String key = configurationHash(rules);
+        synchronized (plans) {
+            MappingPlan cached = plans.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MappingPlan plan = PlanCompiler.compile(rules, jsonFactory, compileThreshold);
+        synchronized (plans) {
+            // Keep the plan another thread may have cached meanwhile, so its application count is not split
+            MappingPlan raced = plans.putIfAbsent(key, plan);
+            return raced != null ? raced : plan;
+        }
+    }
+
+    public JsonFactory getJsonFactory() {
+        return jsonFactory;
+    }
+
+    // Only what a plan is built from counts: paths and transformation of every rule, in order
+    static String configurationHash(List<MappingRule> rules) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (MappingRule rule : rules) {
+                update(digest, rule.getSourcePath());
+                update(digest, rule.getTargetPath());
+                update(digest, rule.getTransformation());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Length-prefixed, with -1 for null, so neighbouring values cannot run into each other
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = value != null ? bytes.length : -1;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+}
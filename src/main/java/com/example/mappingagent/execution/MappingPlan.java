@@ -0,0 +1,249 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A compiled {@code MappingConfiguration}. Transforming a document is one pass over the source tokens, guided by
+ * the source path trie, that keeps only the values some rule reads: scalars as their token and text, objects and
+ * arrays as a {@link TokenBuffer}. Everything else is skipped without being parsed into objects. The target
+ * document is then written straight to a {@link JsonGenerator} by walking the target path trie.
+ * <p>
+ * Once a plan has transformed more documents than the compile threshold it is compiled to bytecode by
+ * {@link PlanBytecodeCompiler}, and later documents go through the generated class. Plans that cannot be
+ * compiled keep being interpreted. Plans can be shared between threads.
+ */
+public final class MappingPlan {
+
+    private final SourceNode sourceRoot;
+    private final TargetNode targetRoot;
+    private final int maxLevel;
+    private final int ruleCount;
+    private final List<MappingRule> skippedRules;
+    private final JsonFactory jsonFactory;
+    private final long compileThreshold;
+
+    private final AtomicLong applications = new AtomicLong();
+    private volatile CompiledTransform compiled;
+    private volatile boolean compileAttempted;
+
+    MappingPlan(SourceNode sourceRoot, TargetNode targetRoot, int maxLevel, int ruleCount,
+                List<MappingRule> skippedRules, JsonFactory jsonFactory, long compileThreshold) {
+        this.sourceRoot = sourceRoot;
+        this.targetRoot = targetRoot;
+        this.maxLevel = maxLevel;
+        this.ruleCount = ruleCount;
+        this.skippedRules = List.copyOf(skippedRules);
+        this.jsonFactory = jsonFactory;
+        this.compileThreshold = compileThreshold;
+        // A negative threshold turns the compiled tier off
+        this.compileAttempted = compileThreshold < 0;
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    // Rules left out because they pair a target array with a different source array than an earlier rule
+    public List<MappingRule> skippedRules() {
+        return skippedRules;
+    }
+
+    // Whether documents currently go through the generated class
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    public String transform(String json) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            transform(parser, generator);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads one value from {@code parser} (starting at its current token, or the next one if there is none) and
+     * writes the mapped value to {@code generator}. Leaves the parser on the last token of the value.
+     */
+    public void transform(JsonParser parser, JsonGenerator generator) throws IOException {
+        CompiledTransform transform = compiled;
+        if (transform == null && !compileAttempted && applications.incrementAndGet() > compileThreshold) {
+            transform = compile();
+        }
+        if (transform != null) {
+            transform.transform(parser, generator);
+            return;
+        }
+
+        if (parser.currentToken() == null && parser.nextToken() == null) {
+            throw new JsonParseException(parser, "No JSON content to transform");
+        }
+
+        Scope[] stack = new Scope[maxLevel + 1];
+        stack[0] = new Scope(sourceRoot);
+        read(parser, sourceRoot, stack, 0);
+
+        LazyGenerator out = new LazyGenerator(generator);
+        if (!write(targetRoot, null, stack, 0, out)) {
+            // Nothing mapped; still emit one value per document
+            if (targetRoot.item != null && targetRoot.fields.isEmpty()) {
+                generator.writeStartArray();
+                generator.writeEndArray();
+            } else {
+                generator.writeStartObject();
+                generator.writeEndObject();
+            }
+        }
+    }
+
+    private synchronized CompiledTransform compile() {
+        if (!compileAttempted) {
+            compiled = PlanBytecodeCompiler.compile(sourceRoot, targetRoot, maxLevel, jsonFactory);
+            compileAttempted = true;
+        }
+        return compiled;
+    }
+
+    // Expects the parser on the first token of the value at node and leaves it on the value's last token
+    private void read(JsonParser parser, SourceNode node, Scope[] stack, int level) throws IOException {
+        if (!node.captures.isEmpty()) {
+            Object value = CapturedValues.capture(parser);
+            for (SourceNode.Capture capture : node.captures) {
+                Object[] values = stack[capture.level()].values;
+                if (values[capture.slot()] == null) {
+                    values[capture.slot()] = value;
+                }
+            }
+            // Rules deeper inside a captured structure read it back from the buffer
+            if (value instanceof TokenBuffer buffer && node.hasChildren()) {
+                try (JsonParser replay = buffer.asParser()) {
+                    replay.nextToken();
+                    readChildren(replay, node, stack, level);
+                }
+            }
+            return;
+        }
+        readChildren(parser, node, stack, level);
+    }
+
+    private void readChildren(JsonParser parser, SourceNode node, Scope[] stack, int level) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            if (node.fields.isEmpty()) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                SourceNode child = node.fields.get(parser.currentName());
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                } else {
+                    read(parser, child, stack, level);
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            SourceNode item = node.item;
+            if (item == null) {
+                parser.skipChildren();
+                return;
+            }
+            if (item.scope) {
+                List<Scope> elements = new ArrayList<>();
+                stack[level].arrays[item.arrayIndex] = elements;
+                while (nextElement(parser)) {
+                    Scope element = new Scope(item);
+                    elements.add(element);
+                    stack[level + 1] = element;
+                    read(parser, item, stack, level + 1);
+                }
+            } else {
+                // No rule pairs this array with a target array, so only its first element is used
+                if (nextElement(parser)) {
+                    read(parser, item, stack, level);
+                    while (nextElement(parser)) {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    // Moves to the next element of the array, or to its end; false at the end
+    static boolean nextElement(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new JsonParseException(parser, "Unexpected end of input inside array");
+        }
+        return token != JsonToken.END_ARRAY;
+    }
+
+    // Returns whether anything was written for the node
+    private boolean write(TargetNode node, String name, Scope[] stack, int level, LazyGenerator out)
+            throws IOException {
+        for (TargetNode.Binding binding : node.bindings) {
+            Object value = stack[binding.level()].values[binding.slot()];
+            if (value != null) {
+                out.field(name);
+                CapturedValues.write(value, binding.transformation(), out.flush(), jsonFactory);
+                return true;
+            }
+        }
+
+        if (node.item != null) {
+            return writeArray(node.item, name, stack, level, out);
+        }
+        if (!node.fields.isEmpty()) {
+            int mark = out.mark();
+            out.field(name);
+            out.startObject();
+            for (Map.Entry<String, TargetNode> field : node.fields.entrySet()) {
+                write(field.getValue(), field.getKey(), stack, level, out);
+            }
+            return out.end(mark, false);
+        }
+        return false;
+    }
+
+    private boolean writeArray(TargetNode item, String name, Scope[] stack, int level, LazyGenerator out)
+            throws IOException {
+        if (item.source == null) {
+            int mark = out.mark();
+            out.field(name);
+            out.startArray();
+            write(item, null, stack, level, out);
+            return out.end(mark, true);
+        }
+
+        List<Scope> elements = stack[level].arrays[item.source.arrayIndex];
+        if (elements == null) {
+            return false;
+        }
+        out.field(name);
+        JsonGenerator generator = out.flush();
+        generator.writeStartArray();
+        for (Scope element : elements) {
+            stack[level + 1] = element;
+            // Keep positions aligned with the source array
+            if (!write(item, null, stack, level + 1, out)) {
+                generator.writeNull();
+            }
+        }
+        generator.writeEndArray();
+        return true;
+    }
+}
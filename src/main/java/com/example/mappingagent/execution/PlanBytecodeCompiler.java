@@ -0,0 +1,730 @@
+package com.example.mappingagent.execution;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates a {@link CompiledTransform} for a plan, defined as a hidden class so it is unloaded together with
+ * the plan. Every source node becomes a static method whose field dispatch is a switch on the name's hash code,
+ * and every target object a method that writes its fields in order with the slot numbers and names as constants.
+ * <p>
+ * Arrays work as in the interpreter: elements of a paired source array get a {@link Scope} each, and target arrays
+ * loop over them. Target objects without arrays below them know up front whether they will write anything, from
+ * one range of slots; those with arrays defer their field name and start through a {@link LazyGenerator}. Plans
+ * whose methods would exceed the class file limits stay interpreted.
+ */
+final class PlanBytecodeCompiler {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanBytecodeCompiler.class);
+
+    private static final String CLASS_NAME = "com/example/mappingagent/execution/CompiledMappingPlan";
+    private static final String BASE = Type.getInternalName(CompiledTransform.class);
+    private static final String PARSER = Type.getInternalName(JsonParser.class);
+    private static final String GENERATOR = Type.getInternalName(JsonGenerator.class);
+    private static final String LAZY = Type.getInternalName(LazyGenerator.class);
+    private static final String SCOPE = Type.getInternalName(Scope.class);
+    private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+    private static final String SCOPE_ARRAY = "[L" + SCOPE + ";";
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String LIST = "java/util/List";
+
+    private static final String READ_DESC = "(L" + PARSER + ";" + SCOPE_ARRAY + ")V";
+    private static final String WRITE_DESC = "(L" + GENERATOR + ";" + SCOPE_ARRAY + ")V";
+    private static final String WRITE_NODE_DESC = "(L" + GENERATOR + ";" + OBJECT_ARRAY + STRING + ")Z";
+    private static final String WRITE_LAZY_NODE_DESC = "(L" + LAZY + ";" + SCOPE_ARRAY + STRING + ")Z";
+    private static final String WRITE_VALUE_DESC = "(L" + GENERATOR + ";" + STRING + "Ljava/lang/Object;I)Z";
+    private static final String WRITE_LAZY_VALUE_DESC = "(L" + LAZY + ";" + STRING + "Ljava/lang/Object;I)Z";
+
+    private final SourceNode sourceRoot;
+    private final TargetNode targetRoot;
+
+    // Slots of every scope renumbered so that the bindings below every target node without arrays form one range
+    private final Map<SourceNode, SlotNumbers> slotNumbers = new IdentityHashMap<>();
+    private final Map<TargetNode, SourceNode> storages = new IdentityHashMap<>();
+    private final Map<TargetNode, int[]> slotRanges = new IdentityHashMap<>();
+    // Stack level of the scope every target node reads from, and the scoped nodes on the way to every source node
+    private final Map<TargetNode, Integer> targetLevels = new IdentityHashMap<>();
+    private final Map<SourceNode, SourceNode[]> sourceScopes = new IdentityHashMap<>();
+    // Target nodes with an array at or below them
+    private final Set<TargetNode> withArrays = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Object, String> methodNames = new IdentityHashMap<>();
+
+    private PlanBytecodeCompiler(SourceNode sourceRoot, TargetNode targetRoot) {
+        this.sourceRoot = sourceRoot;
+        this.targetRoot = targetRoot;
+    }
+
+    /**
+     * Returns the compiled form of the plan with these tries, or null if it has to stay interpreted.
+     */
+    static CompiledTransform compile(SourceNode sourceRoot, TargetNode targetRoot, int maxLevel,
+                                     JsonFactory jsonFactory) {
+        try {
+            byte[] bytes = new PlanBytecodeCompiler(sourceRoot, targetRoot).generate();
+            Class<?> type = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            return (CompiledTransform) type.getDeclaredConstructor(JsonFactory.class, int.class, int.class, int.class)
+                    .newInstance(jsonFactory, sourceRoot.slotCount, sourceRoot.arrayCount, maxLevel + 1);
+        } catch (RuntimeException | ReflectiveOperationException | LinkageError e) {
+            log.warn("Mapping plan with {} slots stays interpreted: {}", sourceRoot.slotCount, e.toString());
+            return null;
+        }
+    }
+
+    private byte[] generate() {
+        numberSlots(targetRoot, sourceRoot, 0);
+        List<SourceNode> sources = new ArrayList<>();
+        collect(sourceRoot, new SourceNode[]{sourceRoot}, sources);
+        List<TargetNode> targets = new ArrayList<>();
+        collect(targetRoot, targets);
+
+        // Frames never merge two different reference types, so no class has to be loaded to compute them
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, BASE, null);
+        generateConstructor(writer);
+        generateRead(writer);
+        generateWrite(writer);
+        for (SourceNode node : sources) {
+            if (!node.captures.isEmpty()) {
+                generateCapture(writer, node);
+            }
+            if (node.hasChildren()) {
+                generateFields(writer, node);
+            }
+        }
+        for (TargetNode node : targets) {
+            if (withArrays.contains(node)) {
+                generateLazyObject(writer, node);
+            } else {
+                generateObject(writer, node);
+            }
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    // A node's bindings read the scope of the last paired array above it, which is the storage of their slots
+    private void numberSlots(TargetNode node, SourceNode storage, int level) {
+        storages.put(node, storage);
+        targetLevels.put(node, level);
+        SlotNumbers numbers = slotNumbers.computeIfAbsent(storage, s -> new SlotNumbers(s.slotCount));
+        int from = numbers.next;
+        for (TargetNode.Binding binding : node.bindings) {
+            numbers.slots[binding.slot()] = numbers.next++;
+        }
+        boolean arrays = node.item != null;
+        for (TargetNode field : node.fields.values()) {
+            numberSlots(field, storage, level);
+            arrays |= withArrays.contains(field);
+        }
+        if (node.item != null) {
+            TargetNode item = node.item;
+            numberSlots(item, item.source != null ? item.source : storage, item.source != null ? level + 1 : level);
+        }
+        if (arrays) {
+            withArrays.add(node);
+        } else {
+            slotRanges.put(node, new int[]{from, numbers.next});
+        }
+    }
+
+    private int slot(TargetNode node, TargetNode.Binding binding) {
+        return slotNumbers.get(storages.get(node)).slots[binding.slot()];
+    }
+
+    private int slot(SourceNode node, SourceNode.Capture capture) {
+        return slotNumbers.get(sourceScopes.get(node)[capture.level()]).slots[capture.slot()];
+    }
+
+    // The stack level a source node is read at: one per scoped array element on the way to it
+    private int level(SourceNode node) {
+        return sourceScopes.get(node).length - 1;
+    }
+
+    private void collect(SourceNode node, SourceNode[] scopes, List<SourceNode> nodes) {
+        methodNames.put(node, "r" + methodNames.size());
+        sourceScopes.put(node, scopes);
+        nodes.add(node);
+        for (SourceNode field : node.fields.values()) {
+            collect(field, scopes, nodes);
+        }
+        if (node.item != null) {
+            SourceNode[] itemScopes = scopes;
+            if (node.item.scope) {
+                itemScopes = Arrays.copyOf(scopes, scopes.length + 1);
+                itemScopes[scopes.length] = node.item;
+            }
+            collect(node.item, itemScopes, nodes);
+        }
+    }
+
+    // Target nodes with arrays, the root and nodes with fields get a method; leaves are written inline by their parent
+    private void collect(TargetNode node, List<TargetNode> nodes) {
+        if (withArrays.contains(node) || node == targetRoot || !node.fields.isEmpty()) {
+            methodNames.put(node, "w" + methodNames.size());
+            nodes.add(node);
+        }
+        for (TargetNode field : node.fields.values()) {
+            collect(field, nodes);
+        }
+        if (node.item != null) {
+            collect(node.item, nodes);
+        }
+    }
+
+    private void generateConstructor(ClassWriter writer) {
+        String descriptor = "(L" + Type.getInternalName(JsonFactory.class) + ";III)V";
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", descriptor, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        mv.visitVarInsn(Opcodes.ILOAD, 4);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE, "<init>", descriptor, false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // read(parser, stack): everything is reached from the root's read method
+    private void generateRead(ClassWriter writer) {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PROTECTED, "read", READ_DESC, null, null);
+        mv.visitCode();
+        if (sourceRoot.captures.isEmpty() && !sourceRoot.hasChildren()) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PARSER, "skipChildren", "()L" + PARSER + ";", false);
+            mv.visitInsn(Opcodes.POP);
+        } else {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            invokeRead(mv, sourceRoot);
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // write(generator, stack): the root value, or {} (or [] for a target that is only an array) when nothing was mapped
+    private void generateWrite(ClassWriter writer) {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PROTECTED, "write", WRITE_DESC, null, null);
+        mv.visitCode();
+        Label written = new Label();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        if (withArrays.contains(targetRoot)) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "lazy", "(L" + GENERATOR + ";)L" + LAZY + ";", false);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_NAME, methodNames.get(targetRoot), WRITE_LAZY_NODE_DESC,
+                    false);
+        } else {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            loadValues(mv, 2, 0);
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_NAME, methodNames.get(targetRoot), WRITE_NODE_DESC, false);
+        }
+        mv.visitJumpInsn(Opcodes.IFNE, written);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        push(mv, targetRoot.item != null && targetRoot.fields.isEmpty() ? 1 : 0);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "writeEmpty", "(L" + GENERATOR + ";Z)V", false);
+        mv.visitLabel(written);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // Calls the method that reads the value at node; expects the parser and slots on the stack
+    private void invokeRead(MethodVisitor mv, SourceNode node) {
+        String name = node.captures.isEmpty() ? fieldsMethod(node) : methodNames.get(node);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, name, READ_DESC, false);
+    }
+
+    private String fieldsMethod(SourceNode node) {
+        return methodNames.get(node) + "f";
+    }
+
+    /*
+     * static void rN(JsonParser parser, Scope[] stack) {
+     *     Object value = capture(parser);
+     *     store(stack, level1, s1, value); ...
+     *     JsonParser replay = replay(value);
+     *     if (replay != null) { rNf(replay, stack); replay.close(); }
+     * }
+     */
+    private void generateCapture(ClassWriter writer, SourceNode node) {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, methodNames.get(node),
+                READ_DESC, null, new String[]{"java/io/IOException"});
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "capture", "(L" + PARSER + ";)Ljava/lang/Object;", false);
+        mv.visitVarInsn(Opcodes.ASTORE, 2);
+        for (SourceNode.Capture capture : node.captures) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            push(mv, capture.level());
+            push(mv, slot(node, capture));
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "store", "(" + SCOPE_ARRAY + "IILjava/lang/Object;)V",
+                    false);
+        }
+        if (node.hasChildren()) {
+            // Rules deeper inside a captured structure read it back from the buffer
+            Label done = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "replay", "(Ljava/lang/Object;)L" + PARSER + ";", false);
+            mv.visitVarInsn(Opcodes.ASTORE, 3);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitJumpInsn(Opcodes.IFNULL, done);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, fieldsMethod(node), READ_DESC, false);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PARSER, "close", "()V", false);
+            mv.visitLabel(done);
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /*
+     * static void rNf(JsonParser parser, Scope[] stack) {
+     *     if (isArray(parser)) { ...elements, see generateElements; return; }
+     *     if (!enterObject(parser)) return;
+     *     String name;
+     *     while ((name = nextField(parser)) != null) {
+     *         switch (name.hashCode()) { case h: if (name.equals("a")) { ra(parser, slots); continue; } ... }
+     *         parser.skipChildren();
+     *     }
+     * }
+     */
+    private void generateFields(ClassWriter writer, SourceNode node) {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, fieldsMethod(node),
+                READ_DESC, null, new String[]{"java/io/IOException"});
+        mv.visitCode();
+        Label loop = new Label();
+        Label dispatch = new Label();
+        Label skip = new Label();
+        Label exit = new Label();
+
+        if (node.item != null) {
+            Label object = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "isArray", "(L" + PARSER + ";)Z", false);
+            mv.visitJumpInsn(Opcodes.IFEQ, object);
+            generateElements(mv, node);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitLabel(object);
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "enterObject", "(L" + PARSER + ";)Z", false);
+        mv.visitJumpInsn(Opcodes.IFEQ, exit);
+
+        mv.visitLabel(loop);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "nextField", "(L" + PARSER + ";)" + STRING, false);
+        mv.visitVarInsn(Opcodes.ASTORE, 2);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitJumpInsn(Opcodes.IFNONNULL, dispatch);
+        mv.visitLabel(exit);
+        mv.visitInsn(Opcodes.RETURN);
+
+        mv.visitLabel(dispatch);
+        Map<Integer, List<String>> byHash = new TreeMap<>();
+        for (String name : node.fields.keySet()) {
+            byHash.computeIfAbsent(name.hashCode(), k -> new ArrayList<>()).add(name);
+        }
+        if (!byHash.isEmpty()) {
+            int[] keys = byHash.keySet().stream().mapToInt(Integer::intValue).toArray();
+            Label[] cases = new Label[keys.length];
+            for (int i = 0; i < cases.length; i++) {
+                cases[i] = new Label();
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+            mv.visitLookupSwitchInsn(skip, keys, cases);
+            for (int i = 0; i < keys.length; i++) {
+                mv.visitLabel(cases[i]);
+                for (String name : byHash.get(keys[i])) {
+                    Label next = new Label();
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    mv.visitLdcInsn(name);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals",
+                            "(Ljava/lang/Object;)Z", false);
+                    mv.visitJumpInsn(Opcodes.IFEQ, next);
+                    mv.visitVarInsn(Opcodes.ALOAD, 0);
+                    mv.visitVarInsn(Opcodes.ALOAD, 1);
+                    invokeRead(mv, node.fields.get(name));
+                    mv.visitJumpInsn(Opcodes.GOTO, loop);
+                    mv.visitLabel(next);
+                }
+                mv.visitJumpInsn(Opcodes.GOTO, skip);
+            }
+        }
+
+        mv.visitLabel(skip);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PARSER, "skipChildren", "()L" + PARSER + ";", false);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitJumpInsn(Opcodes.GOTO, loop);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /*
+     * Scoped source arrays, the element list stored in the enclosing scope:
+     *     List<Scope> elements = startElements(stack, level, arrayIndex);
+     *     while (nextElement(parser)) {
+     *         addElement(stack, level + 1, elements, slotCount, arrayCount);
+     *         rI(parser, stack);
+     *     }
+     * others only contribute their first element:
+     *     if (nextElement(parser)) { rI(parser, stack); skipElements(parser); }
+     */
+    private void generateElements(MethodVisitor mv, SourceNode node) {
+        SourceNode item = node.item;
+        int level = level(node);
+        Label done = new Label();
+        if (item.scope) {
+            Label loop = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            push(mv, level);
+            push(mv, item.arrayIndex);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "startElements", "(" + SCOPE_ARRAY + "II)L" + LIST + ";",
+                    false);
+            mv.visitVarInsn(Opcodes.ASTORE, 3);
+            mv.visitLabel(loop);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "nextElement", "(L" + PARSER + ";)Z", false);
+            mv.visitJumpInsn(Opcodes.IFEQ, done);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            push(mv, level + 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            push(mv, item.slotCount);
+            push(mv, item.arrayCount);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "addElement", "(" + SCOPE_ARRAY + "IL" + LIST + ";II)V",
+                    false);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            invokeRead(mv, item);
+            mv.visitJumpInsn(Opcodes.GOTO, loop);
+        } else {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "nextElement", "(L" + PARSER + ";)Z", false);
+            mv.visitJumpInsn(Opcodes.IFEQ, done);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            invokeRead(mv, item);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "skipElements", "(L" + PARSER + ";)V", false);
+        }
+        mv.visitLabel(done);
+    }
+
+    /*
+     * For target nodes without arrays, given the values of the scope they read:
+     * boolean wN(JsonGenerator generator, Object[] slots, String name) {
+     *     if (writeValue(generator, name, slots[s1], t1)) return true; ...
+     *     if (!anyValue(slots, from, to)) return false;
+     *     startObject(generator, name);
+     *     writeValue(generator, "leaf", slots[s2], t2) || ...;
+     *     wM(generator, slots, "object");
+     *     generator.writeEndObject();
+     *     return true;
+     * }
+     */
+    private void generateObject(ClassWriter writer, TargetNode node) {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE, methodNames.get(node), WRITE_NODE_DESC, null,
+                new String[]{"java/io/IOException"});
+        mv.visitCode();
+        Label written = new Label();
+        Label empty = new Label();
+
+        writeBindings(mv, node, null, written);
+        if (!node.fields.isEmpty()) {
+            int[] range = slotRanges.get(node);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            push(mv, range[0]);
+            push(mv, range[1]);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "anyValue", "(" + OBJECT_ARRAY + "II)Z", false);
+            mv.visitJumpInsn(Opcodes.IFEQ, empty);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "startObject", "(L" + GENERATOR + ";" + STRING + ")V",
+                    false);
+            for (Map.Entry<String, TargetNode> field : node.fields.entrySet()) {
+                TargetNode child = field.getValue();
+                if (child.fields.isEmpty()) {
+                    Label next = new Label();
+                    writeBindings(mv, child, field.getKey(), next);
+                    mv.visitLabel(next);
+                } else {
+                    mv.visitVarInsn(Opcodes.ALOAD, 0);
+                    mv.visitVarInsn(Opcodes.ALOAD, 1);
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    mv.visitLdcInsn(field.getKey());
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_NAME, methodNames.get(child), WRITE_NODE_DESC,
+                            false);
+                    mv.visitInsn(Opcodes.POP);
+                }
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, GENERATOR, "writeEndObject", "()V", false);
+            mv.visitJumpInsn(Opcodes.GOTO, written);
+        }
+
+        mv.visitLabel(empty);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(written);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /*
+     * For target nodes with arrays, which decide as they go whether they write anything, as the interpreter does:
+     * boolean wN(LazyGenerator out, Scope[] stack, String name) {
+     *     if (writeValue(out, name, values(stack, level)[s1], t1)) return true; ...
+     *     paired array:   List<Scope> elements = elements(stack, level, arrayIndex);
+     *                     if (elements == null) return false;
+     *                     out.field(name); JsonGenerator generator = out.flush(); generator.writeStartArray();
+     *                     for (i...) { stack[level + 1] = elements.get(i); if (!<item>) generator.writeNull(); }
+     *                     generator.writeEndArray(); return true;
+     *     unpaired array: int mark = out.mark(); out.field(name); out.startArray(); <item>; return out.end(mark, true);
+     *     object:         int mark = out.mark(); out.field(name); out.startObject(); <field>...;
+     *                     return out.end(mark, false);
+     * }
+     */
+    private void generateLazyObject(ClassWriter writer, TargetNode node) {
+        MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PRIVATE, methodNames.get(node), WRITE_LAZY_NODE_DESC, null,
+                new String[]{"java/io/IOException"});
+        mv.visitCode();
+        int level = targetLevels.get(node);
+        Label written = new Label();
+        Label empty = new Label();
+
+        for (TargetNode.Binding binding : node.bindings) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            loadValues(mv, 2, level);
+            push(mv, slot(node, binding));
+            mv.visitInsn(Opcodes.AALOAD);
+            push(mv, binding.transformation().ordinal());
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BASE, "writeValue", WRITE_LAZY_VALUE_DESC, false);
+            mv.visitJumpInsn(Opcodes.IFNE, written);
+        }
+
+        TargetNode item = node.item;
+        if (item != null && item.source != null) {
+            Label loop = new Label();
+            Label next = new Label();
+            Label done = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            push(mv, level);
+            push(mv, item.source.arrayIndex);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "elements", "(" + SCOPE_ARRAY + "II)L" + LIST + ";", false);
+            mv.visitVarInsn(Opcodes.ASTORE, 4);
+            mv.visitVarInsn(Opcodes.ALOAD, 4);
+            mv.visitJumpInsn(Opcodes.IFNULL, empty);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, "field", "(" + STRING + ")V", false);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, "flush", "()L" + GENERATOR + ";", false);
+            mv.visitVarInsn(Opcodes.ASTORE, 5);
+            mv.visitVarInsn(Opcodes.ALOAD, 5);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, GENERATOR, "writeStartArray", "()V", false);
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitVarInsn(Opcodes.ISTORE, 6);
+
+            mv.visitLabel(loop);
+            mv.visitVarInsn(Opcodes.ILOAD, 6);
+            mv.visitVarInsn(Opcodes.ALOAD, 4);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, LIST, "size", "()I", true);
+            mv.visitJumpInsn(Opcodes.IF_ICMPGE, done);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            push(mv, level + 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 4);
+            mv.visitVarInsn(Opcodes.ILOAD, 6);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, LIST, "get", "(I)Ljava/lang/Object;", true);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, SCOPE);
+            mv.visitInsn(Opcodes.AASTORE);
+            // Keep positions aligned with the source array
+            writeNode(mv, item, null, level + 1);
+            mv.visitJumpInsn(Opcodes.IFNE, next);
+            mv.visitVarInsn(Opcodes.ALOAD, 5);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, GENERATOR, "writeNull", "()V", false);
+            mv.visitLabel(next);
+            mv.visitIincInsn(6, 1);
+            mv.visitJumpInsn(Opcodes.GOTO, loop);
+
+            mv.visitLabel(done);
+            mv.visitVarInsn(Opcodes.ALOAD, 5);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, GENERATOR, "writeEndArray", "()V", false);
+            mv.visitJumpInsn(Opcodes.GOTO, written);
+        } else if (item != null || !node.fields.isEmpty()) {
+            // A one-element array built from the enclosing scope, or an object
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, "mark", "()I", false);
+            mv.visitVarInsn(Opcodes.ISTORE, 4);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, "field", "(" + STRING + ")V", false);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, item != null ? "startArray" : "startObject", "()V", false);
+            if (item != null) {
+                writeNode(mv, item, null, level);
+                mv.visitInsn(Opcodes.POP);
+            } else {
+                for (Map.Entry<String, TargetNode> field : node.fields.entrySet()) {
+                    writeNode(mv, field.getValue(), field.getKey(), level);
+                    mv.visitInsn(Opcodes.POP);
+                }
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ILOAD, 4);
+            push(mv, item != null ? 1 : 0);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, "end", "(IZ)Z", false);
+            mv.visitInsn(Opcodes.IRETURN);
+        }
+
+        mv.visitLabel(empty);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitLabel(written);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // Writes a node below a target node with arrays and leaves whether anything was written on the stack
+    private void writeNode(MethodVisitor mv, TargetNode node, String name, int level) {
+        Label end = new Label();
+        if (withArrays.contains(node)) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            pushName(mv, name);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_NAME, methodNames.get(node), WRITE_LAZY_NODE_DESC, false);
+        } else if (!node.fields.isEmpty()) {
+            // Nothing is pending once it is known that the object gets written
+            Label skip = new Label();
+            int[] range = slotRanges.get(node);
+            loadValues(mv, 2, level);
+            push(mv, range[0]);
+            push(mv, range[1]);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "anyValue", "(" + OBJECT_ARRAY + "II)Z", false);
+            mv.visitJumpInsn(Opcodes.IFEQ, skip);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, LAZY, "flush", "()L" + GENERATOR + ";", false);
+            loadValues(mv, 2, level);
+            pushName(mv, name);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, CLASS_NAME, methodNames.get(node), WRITE_NODE_DESC, false);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(skip);
+            mv.visitInsn(Opcodes.ICONST_0);
+        } else {
+            Label written = new Label();
+            for (TargetNode.Binding binding : node.bindings) {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                pushName(mv, name);
+                loadValues(mv, 2, level);
+                push(mv, slot(node, binding));
+                mv.visitInsn(Opcodes.AALOAD);
+                push(mv, binding.transformation().ordinal());
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BASE, "writeValue", WRITE_LAZY_VALUE_DESC, false);
+                mv.visitJumpInsn(Opcodes.IFNE, written);
+            }
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitJumpInsn(Opcodes.GOTO, end);
+            mv.visitLabel(written);
+            mv.visitInsn(Opcodes.ICONST_1);
+        }
+        mv.visitLabel(end);
+    }
+
+    // values(stack, level): the slots of the scope at that level
+    private static void loadValues(MethodVisitor mv, int stackVar, int level) {
+        mv.visitVarInsn(Opcodes.ALOAD, stackVar);
+        push(mv, level);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, BASE, "values", "(" + SCOPE_ARRAY + "I)" + OBJECT_ARRAY, false);
+    }
+
+    private static void pushName(MethodVisitor mv, String name) {
+        if (name != null) {
+            mv.visitLdcInsn(name);
+        } else {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        }
+    }
+
+    // Tries the node's bindings in order and jumps to written after the first one with a value; a null name
+    // means the method's name argument
+    private void writeBindings(MethodVisitor mv, TargetNode node, String name, Label written) {
+        for (TargetNode.Binding binding : node.bindings) {
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            if (name != null) {
+                mv.visitLdcInsn(name);
+            } else {
+                mv.visitVarInsn(Opcodes.ALOAD, 3);
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            push(mv, slot(node, binding));
+            mv.visitInsn(Opcodes.AALOAD);
+            push(mv, binding.transformation().ordinal());
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BASE, "writeValue", WRITE_VALUE_DESC, false);
+            mv.visitJumpInsn(Opcodes.IFNE, written);
+        }
+    }
+
+    private static void push(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    // Old to new slot numbers of one scope
+    private static final class SlotNumbers {
+        private final int[] slots;
+        private int next;
+
+        SlotNumbers(int slotCount) {
+            this.slots = new int[slotCount];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.MappingRule;
+import com.example.mappingagent.service.SchemaParser;
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns mapping rules into source and target path tries. Each rule reads the value at its source path into a
+ * slot and writes it at its target path. The i-th array level of a target path is paired with the i-th array
+ * level of its source path, so element n of the source array produces element n of the target array. Source
+ * levels beyond the target's only contribute their first element; target levels beyond the source's become
+ * one-element arrays.
+ */
+final class PlanCompiler {
+
+    private PlanCompiler() {
+    }
+
+    static MappingPlan compile(List<MappingRule> rules, JsonFactory jsonFactory, long compileThreshold) {
+        SourceNode sourceRoot = new SourceNode(0);
+        sourceRoot.scope = true;
+        TargetNode targetRoot = new TargetNode();
+        List<MappingRule> skipped = new ArrayList<>();
+
+        for (MappingRule rule : rules) {
+            Transformation transformation = Transformation.of(rule.getTransformation());
+            String[] sourceNames = segments(rule.getSourcePath());
+            String[] targetNames = segments(rule.getTargetPath());
+
+            List<SourceNode> sourceItems = new ArrayList<>();
+            SourceNode source = sourceRoot;
+            for (String name : sourceNames) {
+                source = isItem(name) ? source.item() : source.field(name);
+                if (isItem(name)) {
+                    sourceItems.add(source);
+                }
+            }
+
+            int targetItems = 0;
+            for (String name : targetNames) {
+                if (isItem(name)) {
+                    targetItems++;
+                }
+            }
+            int pairedLevels = Math.min(sourceItems.size(), targetItems);
+
+            if (!fitsTargetArrays(targetRoot, targetNames, sourceItems, pairedLevels)) {
+                skipped.add(rule);
+                continue;
+            }
+
+            TargetNode target = targetRoot;
+            int level = 0;
+            for (String name : targetNames) {
+                if (isItem(name)) {
+                    target = target.item();
+                    if (!target.paired) {
+                        target.paired = true;
+                        target.source = level < pairedLevels ? sourceItems.get(level) : null;
+                    }
+                    level++;
+                } else {
+                    target = target.field(name);
+                }
+            }
+
+            for (int i = 0; i < pairedLevels; i++) {
+                sourceItems.get(i).scope = true;
+            }
+            SourceNode storage = pairedLevels == 0 ? sourceRoot : sourceItems.get(pairedLevels - 1);
+            int slot = storage.slotCount++;
+            source.captures.add(new SourceNode.Capture(pairedLevels, slot));
+            target.bindings.add(new TargetNode.Binding(pairedLevels, slot, transformation));
+        }
+
+        int maxLevel = assignArrays(sourceRoot, sourceRoot, 0);
+        return new MappingPlan(sourceRoot, targetRoot, maxLevel, rules.size() - skipped.size(), skipped, jsonFactory,
+                compileThreshold);
+    }
+
+    // A rule fits if every target array level it passes through is already paired the same way, or not yet at all
+    private static boolean fitsTargetArrays(TargetNode root, String[] targetNames,
+                                            List<SourceNode> sourceItems, int pairedLevels) {
+        TargetNode target = root;
+        int level = 0;
+        for (String name : targetNames) {
+            target = isItem(name) ? target.item : target.fields.get(name);
+            if (target == null) {
+                return true;
+            }
+            if (isItem(name)) {
+                SourceNode expected = level < pairedLevels ? sourceItems.get(level) : null;
+                if (target.paired && target.source != expected) {
+                    return false;
+                }
+                level++;
+            }
+        }
+        return true;
+    }
+
+    // Gives every scoped array a position in the Scope of the nearest scoped node above it; returns the deepest level
+    private static int assignArrays(SourceNode node, SourceNode enclosingScope, int level) {
+        int maxLevel = level;
+        for (SourceNode field : node.fields.values()) {
+            maxLevel = Math.max(maxLevel, assignArrays(field, enclosingScope, level));
+        }
+        if (node.item != null) {
+            if (node.item.scope) {
+                node.item.arrayIndex = enclosingScope.arrayCount++;
+                maxLevel = Math.max(maxLevel, assignArrays(node.item, node.item, level + 1));
+            } else {
+                maxLevel = Math.max(maxLevel, assignArrays(node.item, enclosingScope, level));
+            }
+        }
+        return maxLevel;
+    }
+
+    private static String[] segments(String path) {
+        return path == null || path.isEmpty() ? new String[0] : path.split("\\.", -1);
+    }
+
+    private static boolean isItem(String name) {
+        return SchemaParser.ARRAY_ITEM_NAME.equals(name);
+    }
+}
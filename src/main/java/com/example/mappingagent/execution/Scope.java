@@ -0,0 +1,20 @@
+package com.example.mappingagent.execution;
+
+import java.util.List;
+
+// Values captured for one document, or for one element of a paired source array
+final class Scope {
+
+    final Object[] values;
+    final List<Scope>[] arrays;
+
+    Scope(SourceNode node) {
+        this(node.slotCount, node.arrayCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    Scope(int slotCount, int arrayCount) {
+        this.values = new Object[slotCount];
+        this.arrays = new List[arrayCount];
+    }
+}
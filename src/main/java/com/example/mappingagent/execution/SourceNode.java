@@ -0,0 +1,43 @@
+package com.example.mappingagent.execution;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Node of the source path trie; array elements are the "item" child
+final class SourceNode {
+
+    final Map<String, SourceNode> fields = new HashMap<>();
+    final List<Capture> captures = new ArrayList<>();
+    final int itemDepth;
+    SourceNode item;
+
+    // Item nodes that some rule pairs with a target array get one Scope per element; the root always has one
+    boolean scope;
+    int slotCount;
+    int arrayIndex = -1;
+    int arrayCount;
+
+    SourceNode(int itemDepth) {
+        this.itemDepth = itemDepth;
+    }
+
+    SourceNode field(String name) {
+        return fields.computeIfAbsent(name, k -> new SourceNode(itemDepth));
+    }
+
+    SourceNode item() {
+        if (item == null) {
+            item = new SourceNode(itemDepth + 1);
+        }
+        return item;
+    }
+
+    boolean hasChildren() {
+        return item != null || !fields.isEmpty();
+    }
+
+    // Stores the value found at this node in slot {@code slot} of the Scope at stack level {@code level}
+    record Capture(int level, int slot) {}
+}
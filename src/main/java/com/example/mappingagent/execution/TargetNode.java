@@ -0,0 +1,33 @@
+package com.example.mappingagent.execution;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Node of the target path trie; fields keep the order in which rules first mention them
+final class TargetNode {
+
+    final Map<String, TargetNode> fields = new LinkedHashMap<>();
+    final List<Binding> bindings = new ArrayList<>();
+    TargetNode item;
+
+    // For item nodes: the source array whose elements become this array's elements, or null for a one-element
+    // array built from the enclosing scope. Fixed by the first rule that reaches the node.
+    boolean paired;
+    SourceNode source;
+
+    TargetNode field(String name) {
+        return fields.computeIfAbsent(name, k -> new TargetNode());
+    }
+
+    TargetNode item() {
+        if (item == null) {
+            item = new TargetNode();
+        }
+        return item;
+    }
+
+    // Reads slot {@code slot} of the Scope at stack level {@code level}
+    record Binding(int level, int slot, Transformation transformation) {}
+}
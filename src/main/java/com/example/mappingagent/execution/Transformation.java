@@ -0,0 +1,29 @@
+package com.example.mappingagent.execution;
+
+import java.util.Locale;
+
+/**
+ * Value conversions a {@code MappingRule} can ask for, resolved once when a plan is compiled.
+ */
+public enum Transformation {
+    DIRECT,
+    STRING,
+    NUMBER,
+    BOOLEAN;
+
+    /**
+     * Resolves a rule's transformation name case-insensitively; a missing name means {@link #DIRECT}.
+     *
+     * @throws IllegalArgumentException for names that are not supported
+     */
+    public static Transformation of(String name) {
+        if (name == null || name.isBlank()) {
+            return DIRECT;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported transformation: " + name);
+        }
+    }
+}
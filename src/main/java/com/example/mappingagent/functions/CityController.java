@@ -1,5 +1,6 @@
 package com.example.mappingagent.functions;
 
+import com.example.mappingagent.service.LlmStreamingClient;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -9,19 +10,22 @@ import org.springframework.web.bind.annotation.RestController;
 public class CityController {
 
     private final ChatClient chatClient;
+    private final LlmStreamingClient llmClient;
 
-    public CityController(ChatClient.Builder builder) {
+    public CityController(ChatClient.Builder builder, LlmStreamingClient llmClient) {
         this.chatClient = builder
                 .defaultSystem("You are a helpful AI Assistant answering questions about cities around the world.")
                 .defaultFunctions("currentWeatherFunction")
                 .build();
+        this.llmClient = llmClient;
     }
 
     @GetMapping("/cities")
     public String cityFaq(@RequestParam String message) {
-        return chatClient.prompt()
+        // Not streamed, since answers that call functions are not
+        return llmClient.call("cities\u0000" + message, () -> chatClient.prompt()
                 .user(message)
                 .call()
-                .content();
+                .content());
     }
 }
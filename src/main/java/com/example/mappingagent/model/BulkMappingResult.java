@@ -0,0 +1,11 @@
+package com.example.mappingagent.model;
+
+import lombok.Data;
+
+@Data
+public class BulkMappingResult {
+    private int index; // position of the pair in the request
+    private MappingConfiguration configuration;
+    private String error;
+
+}
@@ -0,0 +1,13 @@
+package com.example.mappingagent.model;
+
+import lombok.Data;
+
+@Data
+public class BulkTransformSummary {
+    private long records;
+    private long failedRecords; // lines that were not valid JSON; left out of the output
+    private long bytesRead;
+    private long bytesWritten;
+    private long elapsedMillis;
+
+}
@@ -0,0 +1,19 @@
+package com.example.mappingagent.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class MappingJob {
+    private String id; // SHA-256 of the schema pair, so resubmitting the same pair finds the same job
+    private JobStatus status;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private MappingConfiguration configuration;
+    private String error;
+    private long matchingVersion; // EnhancedMappingService#matchingVersion the configuration was generated under
+    private boolean complete; // Every semantic lookup finished, none fell back to weaker matches
+
+}
@@ -0,0 +1,11 @@
+package com.example.mappingagent.model;
+
+import lombok.Data;
+
+@Data
+public class MappingSummary {
+    private long ruleCount;
+    private double overallConfidence;
+    private String notes;
+
+}
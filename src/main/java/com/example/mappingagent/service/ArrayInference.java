@@ -0,0 +1,9 @@
+package com.example.mappingagent.service;
+
+// How SchemaParser derives the structure of an array from its elements
+public enum ArrayInference {
+    // The first element alone decides the structure
+    FIRST,
+    // Fields and types of all (or a sample of) the elements are merged into one union shape
+    UNION
+}
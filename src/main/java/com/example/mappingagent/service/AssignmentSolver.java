@@ -0,0 +1,141 @@
+package com.example.mappingagent.service;
+
+import java.util.Arrays;
+
+/**
+ * Optimal one-to-one assignment (Hungarian algorithm with potentials) over a dense score matrix.
+ * Runs in O(n^2 * m) for n <= m after rows and columns without any score above the threshold are dropped.
+ */
+final class AssignmentSolver {
+
+    static final int UNASSIGNED = -1;
+
+    private AssignmentSolver() {
+    }
+
+    /**
+     * Returns, for each row, the column it is assigned to so that the total score of all pairs is maximal, or
+     * {@link #UNASSIGNED}. Only pairs scoring above {@code threshold} are ever assigned.
+     */
+    static int[] maximize(double[][] scores, double threshold) {
+        int rows = scores.length;
+        int columns = rows == 0 ? 0 : scores[0].length;
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, UNASSIGNED);
+
+        // Drop rows and columns that have no candidate pair at all
+        int[] rowIndex = new int[rows];
+        int[] columnIndex = new int[columns];
+        boolean[] columnUsed = new boolean[columns];
+        int keptRows = 0;
+        for (int i = 0; i < rows; i++) {
+            boolean candidate = false;
+            for (int j = 0; j < columns; j++) {
+                if (scores[i][j] > threshold) {
+                    candidate = true;
+                    columnUsed[j] = true;
+                }
+            }
+            if (candidate) {
+                rowIndex[keptRows++] = i;
+            }
+        }
+        int keptColumns = 0;
+        for (int j = 0; j < columns; j++) {
+            if (columnUsed[j]) {
+                columnIndex[keptColumns++] = j;
+            }
+        }
+        if (keptRows == 0) {
+            return assignment;
+        }
+
+        // Minimize the negated scores; pairs at or below the threshold cost 0, the same as leaving a row unmatched
+        boolean transpose = keptRows > keptColumns;
+        int n = transpose ? keptColumns : keptRows;
+        int m = transpose ? keptRows : keptColumns;
+        double[][] cost = new double[n][m];
+        for (int a = 0; a < keptRows; a++) {
+            for (int b = 0; b < keptColumns; b++) {
+                double score = scores[rowIndex[a]][columnIndex[b]];
+                double value = score > threshold ? -score : 0.0;
+                if (transpose) {
+                    cost[b][a] = value;
+                } else {
+                    cost[a][b] = value;
+                }
+            }
+        }
+
+        int[] solved = solve(cost, n, m);
+        for (int r = 0; r < n; r++) {
+            int c = solved[r];
+            int a = transpose ? c : r;
+            int b = transpose ? r : c;
+            int row = rowIndex[a];
+            int column = columnIndex[b];
+            if (scores[row][column] > threshold) {
+                assignment[row] = column;
+            }
+        }
+        return assignment;
+    }
+
+    // Classic potentials formulation, 1-based internally; requires n <= m and assigns every row
+    private static int[] solve(double[][] cost, int n, int m) {
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] result = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                result[p[j] - 1] = j - 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.mappingagent.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein similarity that only computes the diagonal band a passing score can lie in and stops as soon as
+ * a whole row exceeds the allowed distance. The two DP rows are thread-local and reused between calls.
+ */
+@Component
+public class BoundedLevenshteinScorer implements NameSimilarityScorer {
+
+    // Large enough to never be a real distance, small enough that + 1 cannot overflow
+    private static final int FAR = Integer.MAX_VALUE / 2;
+    // Tolerates rounding in (1 - minSimilarity) * length so that borderline names are still scored exactly
+    private static final double EPSILON = 1e-9;
+
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[][]{new int[32], new int[32]});
+
+    @Override
+    public double similarity(char[] normalized1, char[] normalized2) {
+        int maxLength = Math.max(normalized1.length, normalized2.length);
+        if (maxLength == 0) return 1.0;
+
+        int distance = distance(normalized1, normalized2, maxLength);
+        return 1.0 - (double) distance / maxLength;
+    }
+
+    @Override
+    public double similarity(char[] normalized1, char[] normalized2, double minSimilarity) {
+        int maxLength = Math.max(normalized1.length, normalized2.length);
+        if (maxLength == 0) return 1.0;
+
+        int maxDistance = minSimilarity <= 0.0
+                ? maxLength
+                : (int) Math.floor((1.0 - minSimilarity) * maxLength + EPSILON);
+        int distance = distance(normalized1, normalized2, maxDistance);
+        return distance < 0 ? 0.0 : 1.0 - (double) distance / maxLength;
+    }
+
+    /**
+     * Edit distance of the two arrays, or -1 when it is larger than {@code threshold}.
+     */
+    static int distance(char[] left, char[] right, int threshold) {
+        // Keep the shorter array as the DP row
+        if (left.length > right.length) {
+            char[] swap = left;
+            left = right;
+            right = swap;
+        }
+        int n = left.length;
+        int m = right.length;
+        if (m - n > threshold) {
+            return -1;
+        }
+        if (n == 0) {
+            return m;
+        }
+
+        int[][] rows = rows(n + 1);
+        int[] previous = rows[0];
+        int[] current = rows[1];
+
+        int boundary = Math.min(n, threshold) + 1;
+        for (int i = 0; i < boundary; i++) {
+            previous[i] = i;
+        }
+        Arrays.fill(previous, boundary, n + 1, FAR);
+        Arrays.fill(current, 0, n + 1, FAR);
+
+        for (int j = 1; j <= m; j++) {
+            char rightJ = right[j - 1];
+            current[0] = j;
+
+            // Only cells within threshold of the diagonal can lead to a passing distance
+            int min = Math.max(1, j - threshold);
+            int max = Math.min(n, j + threshold);
+            if (min > 1) {
+                current[min - 1] = FAR;
+            }
+
+            int rowMin = FAR;
+            for (int i = min; i <= max; i++) {
+                int cell = left[i - 1] == rightJ
+                        ? previous[i - 1]
+                        : 1 + Math.min(Math.min(current[i - 1], previous[i]), previous[i - 1]);
+                current[i] = cell;
+                if (cell < rowMin) {
+                    rowMin = cell;
+                }
+            }
+            if (rowMin > threshold) {
+                return -1;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return previous[n] <= threshold ? previous[n] : -1;
+    }
+
+    private static int[][] rows(int size) {
+        int[][] rows = ROWS.get();
+        if (rows[0].length < size) {
+            int capacity = Math.max(size, rows[0].length * 2);
+            rows[0] = new int[capacity];
+            rows[1] = new int[capacity];
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingRule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a previous enhanced mapping into the rules generated under each matched object pair of the schemas it
+ * came from. Enhanced rule paths descend one level on both sides at a time, so every pair of equally long prefixes
+ * of a rule's paths is an object pair that was matched, and the rules under that pair are exactly the ones sharing
+ * both prefixes.
+ */
+final class CarriedRules {
+
+    private CarriedRules() {
+    }
+
+    /**
+     * Returns the rules under each old object pair, relative to it and keyed by the pair's fingerprints. Empty if
+     * the rules or old schemas are missing, or any rule lacks a path, does not follow the lockstep layout or does
+     * not resolve in the old schemas, since the previous mapping then cannot be split safely.
+     */
+    static Map<MappingResultCache.Key, List<MappingRule>> index(List<MappingRule> rules, JsonNode oldSource,
+                                                              JsonNode oldTarget, SchemaFingerprint fingerprints) {
+        if (rules == null || oldSource == null || oldTarget == null) {
+            return Map.of();
+        }
+        Map<JsonNode, Map<JsonNode, List<MappingRule>>> byPair = new IdentityHashMap<>();
+        List<JsonNode[]> pairs = new ArrayList<>();
+
+        for (MappingRule rule : rules) {
+            if (rule == null || rule.getSourcePath() == null || rule.getTargetPath() == null) {
+                return Map.of();
+            }
+            String[] sourceNames = rule.getSourcePath().split("\\.", -1);
+            String[] targetNames = rule.getTargetPath().split("\\.", -1);
+            if (sourceNames.length != targetNames.length) {
+                return Map.of();
+            }
+
+            JsonNode[] sourceNodes = resolve(oldSource, sourceNames);
+            JsonNode[] targetNodes = resolve(oldTarget, targetNames);
+            if (sourceNodes == null || targetNodes == null) {
+                return Map.of();
+            }
+
+            // Depth 0 is the schema roots; the last names are the leaf pair of the rule itself
+            for (int depth = 0; depth < sourceNames.length; depth++) {
+                JsonNode source = sourceNodes[depth];
+                JsonNode target = targetNodes[depth];
+                List<MappingRule> pairRules = byPair.computeIfAbsent(source, k -> new IdentityHashMap<>()).get(target);
+                if (pairRules == null) {
+                    pairRules = new ArrayList<>();
+                    byPair.get(source).put(target, pairRules);
+                    pairs.add(new JsonNode[]{source, target});
+                }
+                pairRules.add(relative(rule, sourceNames, targetNames, depth));
+            }
+        }
+
+        // Identical old subtree pairs normally carry identical rules; the first one seen wins
+        Map<MappingResultCache.Key, List<MappingRule>> carried = new HashMap<>();
+        for (JsonNode[] pair : pairs) {
+            carried.putIfAbsent(fingerprints.key(pair[0], pair[1]), byPair.get(pair[0]).get(pair[1]));
+        }
+        return carried;
+    }
+
+    // Nodes along a rule path, starting with the root
+    private static JsonNode[] resolve(JsonNode root, String[] names) {
+        JsonNode[] nodes = new JsonNode[names.length + 1];
+        nodes[0] = root;
+        for (int i = 0; i < names.length; i++) {
+            nodes[i + 1] = child(nodes[i], names[i]);
+            if (nodes[i + 1] == null) {
+                return null;
+            }
+        }
+        return nodes;
+    }
+
+    private static JsonNode child(JsonNode parent, String name) {
+        if (parent.getChildren() == null) {
+            return null;
+        }
+        for (JsonNode child : parent.getChildren()) {
+            if (child.getName().equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static MappingRule relative(MappingRule rule, String[] sourceNames, String[] targetNames, int depth) {
+        MappingRule relative = new MappingRule();
+        relative.setSourcePath(String.join(".", List.of(sourceNames).subList(depth, sourceNames.length)));
+        relative.setTargetPath(String.join(".", List.of(targetNames).subList(depth, targetNames.length)));
+        relative.setTransformation(rule.getTransformation());
+        relative.setConfidenceScore(rule.getConfidenceScore());
+        return relative;
+    }
+}
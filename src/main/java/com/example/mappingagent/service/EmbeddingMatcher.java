@@ -0,0 +1,193 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Matches fields by the cosine similarity of their name embeddings, as a deterministic and much cheaper alternative
+ * to asking the chat model. Names are embedded as their words ("shippingAddr" becomes "shipping addr"), optionally
+ * with their type, and the unit vectors are cached per embedded text, so a recurring vocabulary is only embedded once.
+ */
+@Component
+public class EmbeddingMatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingMatcher.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final MappingMetrics metrics;
+    private final int batchSize;
+    private final double threshold;
+    private final boolean typeContext;
+    private final int cacheSize;
+
+    // Access-ordered so the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, float[]> vectors = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public EmbeddingMatcher(EmbeddingModel embeddingModel,
+                            MappingMetrics metrics,
+                            @Value("${mapping.embedding.batch-size:64}") int batchSize,
+                            @Value("${mapping.embedding.threshold:0.75}") double threshold,
+                            @Value("${mapping.embedding.type-context:false}") boolean typeContext,
+                            @Value("${mapping.embedding.cache-size:100000}") int cacheSize) {
+        this.embeddingModel = embeddingModel;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.threshold = threshold;
+        this.typeContext = typeContext;
+        this.cacheSize = cacheSize;
+    }
+
+    public FieldMatches findMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+        return findMatchesBatch(List.of(new FieldGroup(sourceFields, targetFields))).get(0);
+    }
+
+    /**
+     * Matches every group on its own, but embeds the names of all groups together in as few requests as possible.
+     * If the embedding model fails, every group gets empty partial matches, which are used but not cached.
+     */
+    public List<FieldMatches> findMatchesBatch(List<FieldGroup> groups) {
+        try {
+            return metrics.observe(MappingMetrics.SEMANTIC, () -> matchAll(groups));
+        } catch (RuntimeException e) {
+            log.warn("Could not embed field names; falling back to similarity matching", e);
+            return groups.stream()
+                    .map(group -> group.isEmpty() ? FieldMatches.of(Map.of()) : FieldMatches.partial(Map.of()))
+                    .toList();
+        }
+    }
+
+    private List<FieldMatches> matchAll(List<FieldGroup> groups) {
+        Set<String> texts = new LinkedHashSet<>();
+        for (FieldGroup group : groups) {
+            if (!group.isEmpty()) {
+                group.sourceFields().forEach(field -> texts.add(text(field)));
+                group.targetFields().forEach(field -> texts.add(text(field)));
+            }
+        }
+        Map<String, float[]> embedded = embed(texts);
+
+        List<FieldMatches> results = new ArrayList<>(groups.size());
+        for (FieldGroup group : groups) {
+            results.add(FieldMatches.of(group.isEmpty() ? Map.of() : match(group, embedded)));
+        }
+        return results;
+    }
+
+    private Map<String, String> match(FieldGroup group, Map<String, float[]> embedded) {
+        List<JsonNode> sources = group.sourceFields();
+        List<JsonNode> targets = group.targetFields();
+
+        // Targets side by side in one array, so every source row is scored in a single pass over memory
+        int dimensions = embedded.get(text(targets.get(0))).length;
+        float[] targetMatrix = new float[targets.size() * dimensions];
+        for (int j = 0; j < targets.size(); j++) {
+            System.arraycopy(embedded.get(text(targets.get(j))), 0, targetMatrix, j * dimensions, dimensions);
+        }
+
+        double[][] scores = new double[sources.size()][targets.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            float[] source = embedded.get(text(sources.get(i)));
+            for (int j = 0; j < targets.size(); j++) {
+                scores[i][j] = dot(source, targetMatrix, j * dimensions, dimensions);
+            }
+        }
+
+        Map<String, String> matches = new HashMap<>();
+        int[] assignment = AssignmentSolver.maximize(scores, threshold);
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] != AssignmentSolver.UNASSIGNED) {
+                matches.put(sources.get(i).getName(), targets.get(assignment[i]).getName());
+            }
+        }
+        return matches;
+    }
+
+    // Vectors are stored normalized, so this is their cosine similarity
+    static double dot(float[] vector, float[] matrix, int offset, int length) {
+        // Independent partial sums, so consecutive multiply-adds do not wait on each other
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += vector[i] * matrix[offset + i];
+            s1 += vector[i + 1] * matrix[offset + i + 1];
+            s2 += vector[i + 2] * matrix[offset + i + 2];
+            s3 += vector[i + 3] * matrix[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += vector[i] * matrix[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private String text(JsonNode field) {
+        List<String> words = FieldNames.tokens(field.getName());
+        String text = words.isEmpty() ? field.getName() : String.join(" ", words);
+        return typeContext && field.getType() != null ? text + " (" + field.getType() + ")" : text;
+    }
+
+    private Map<String, float[]> embed(Set<String> texts) {
+        Map<String, float[]> embedded = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        lock.lock();
+        try {
+            for (String text : texts) {
+                float[] vector = vectors.get(text);
+                if (vector != null) {
+                    embedded.put(text, vector);
+                } else {
+                    missing.add(text);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // The model is called outside the lock; concurrent misses on the same text may both embed it
+        for (int start = 0; start < missing.size(); start += batchSize) {
+            List<String> batch = missing.subList(start, Math.min(start + batchSize, missing.size()));
+            List<List<Double>> batchVectors = embeddingModel.embed(batch);
+            lock.lock();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    float[] vector = normalize(batchVectors.get(i));
+                    embedded.put(batch.get(i), vector);
+                    vectors.put(batch.get(i), vector);
+                }
+                while (vectors.size() > cacheSize) {
+                    vectors.remove(vectors.keySet().iterator().next());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return embedded;
+    }
+
+    private static float[] normalize(List<Double> embedding) {
+        double norm = 0;
+        for (double value : embedding) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            // A zero vector stays zero and never matches anything
+            vector[i] = norm > 0 ? (float) (embedding.get(i) / norm) : 0f;
+        }
+        return vector;
+    }
+}
@@ -1,47 +1,106 @@
 package com.example.mappingagent.service;
 
+import com.example.mappingagent.model.BulkMappingResult;
 import com.example.mappingagent.model.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.mappingagent.model.MappingConfiguration;
+import com.example.mappingagent.model.MappingSummary;
 import com.example.mappingagent.model.MappingRule;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Service
 public class EnhancedMappingService {
 
+    private static final String NOTES = "Generated with LLM-enhanced semantic matching";
+
     private final EnhancedSimilarityService similarityService;
-    private final ObjectMapper objectMapper;
+    private final SchemaParser schemaParser;
+    private final TraversalMode traversalMode;
+    private final ExecutorService mappingExecutor;
+    private final MappingResultCache resultCache;
+    private final SynonymStore synonymStore;
+    private final MappingMetrics metrics;
 
     public EnhancedMappingService(EnhancedSimilarityService similarityService, 
-                                ObjectMapper objectMapper) {
+                                SchemaParser schemaParser,
+                                @Value("${mapping.enhanced.traversal:sequential}") TraversalMode traversalMode,
+                                ExecutorService mappingExecutor,
+                                MappingResultCache resultCache,
+                                SynonymStore synonymStore,
+                                MappingMetrics metrics) {
         this.similarityService = similarityService;
-        this.objectMapper = objectMapper;
+        this.schemaParser = schemaParser;
+        this.traversalMode = traversalMode;
+        this.mappingExecutor = mappingExecutor;
+        this.resultCache = resultCache;
+        this.synonymStore = synonymStore;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Learns synonyms from the rules of a mapping the caller accepted, so later mappings resolve those names
+     * without the LLM. Cached subtree rules were matched with the synonyms as they were, so they are dropped whenever
+     * the store changed, even if every pair was known before.
+     *
+     * @return how many synonym pairs were new
+     */
+    public int acceptMapping(MappingConfiguration configuration) {
+        long version = synonymStore.version();
+        int learned = synonymStore.learn(configuration.getRules() != null ? configuration.getRules() : List.of());
+        // A pair accepted again is not new, but its higher count can still win over another synonym
+        if (synonymStore.version() != version) {
+            resultCache.clear();
+        }
+        return learned;
     }
 
     public MappingConfiguration generateMapping(JsonNode sourceSchema, JsonNode targetSchema) {
+        return generateMapping(sourceSchema, targetSchema, traversalMode);
+    }
+
+    public MappingConfiguration generateMapping(JsonNode sourceSchema, JsonNode targetSchema, TraversalMode mode) {
+        return generateCheckedMapping(sourceSchema, targetSchema, mode).configuration();
+    }
+
+    /**
+     * Same as {@link #generateMapping(JsonNode, JsonNode)}, and whether every semantic lookup behind it finished.
+     * A mapping that fell back to weaker matches for a lookup that gave up may come out better when generated again.
+     */
+    CheckedMapping generateCheckedMapping(JsonNode sourceSchema, JsonNode targetSchema) {
+        return generateCheckedMapping(sourceSchema, targetSchema, traversalMode);
+    }
+
+    private CheckedMapping generateCheckedMapping(JsonNode sourceSchema, JsonNode targetSchema, TraversalMode mode) {
         List<MappingRule> rules = new ArrayList<>();
-        
-        // Process root level fields
-        if (sourceSchema.getChildren() != null && targetSchema.getChildren() != null) {
-            Map<String, String> fieldMatches = similarityService.findBestMatches(
-                    sourceSchema.getChildren(), 
-                    targetSchema.getChildren()
-            );
-            
-            fieldMatches.forEach((sourceField, targetField) -> {
-                JsonNode sourceChild = findChildByName(sourceSchema, sourceField);
-                JsonNode targetChild = findChildByName(targetSchema, targetField);
-                
-                if (sourceChild != null && targetChild != null) {
-                    generateRulesForNodes(sourceChild, targetChild, "", "", rules);
-                }
-            });
-        }
-        
+        boolean complete = metrics.observe(MappingMetrics.RULES,
+                () -> generateRules(sourceSchema, targetSchema, mode, rules::add, true));
+        return new CheckedMapping(toConfiguration(rules), complete);
+    }
+
+    /**
+     * Changes whenever accepted mappings teach something that can change how schemas are matched. A mapping
+     * generated under another version may come out differently now.
+     */
+    public long matchingVersion() {
+        return synonymStore.version();
+    }
+
+    private static MappingConfiguration toConfiguration(List<MappingRule> rules) {
         // Calculate overall confidence
         double overallConfidence = rules.stream()
                 .mapToDouble(MappingRule::getConfidenceScore)
@@ -51,88 +110,376 @@ public class EnhancedMappingService {
         MappingConfiguration config = new MappingConfiguration();
         config.setRules(rules);
         config.setOverallConfidence(overallConfidence);
-        config.setNotes("Generated with LLM-enhanced semantic matching");
+        config.setNotes(NOTES);
         
         return config;
     }
 
-    private void generateRulesForNodes(JsonNode source, JsonNode target, 
-                                    String sourcePath, String targetPath, 
-                                    List<MappingRule> rules) {
-        String currentSourcePath = sourcePath.isEmpty() ? source.getName() : sourcePath + "." + source.getName();
-        String currentTargetPath = targetPath.isEmpty() ? target.getName() : targetPath + "." + target.getName();
-        
-        // Add rule for current node if it's a leaf node
-        if (source.getChildren() == null || source.getChildren().isEmpty()) {
-            MappingRule rule = new MappingRule();
-            rule.setSourcePath(currentSourcePath);
-            rule.setTargetPath(currentTargetPath);
-            rule.setTransformation("direct");
-            
-            // Confidence based on similarity score
-            double similarity = similarityService.calculateCombinedSimilarity(source, target);
-            rule.setConfidenceScore(similarity);
-            
-            rules.add(rule);
-        } else {
-            // Recursively process children
-            if (source.getChildren() != null && target.getChildren() != null) {
-                Map<String, String> childMatches = similarityService.findBestMatches(
-                        source.getChildren(), 
-                        target.getChildren()
-                );
-                
-                childMatches.forEach((sourceChildName, targetChildName) -> {
-                    JsonNode sourceChild = findChildByName(source, sourceChildName);
-                    JsonNode targetChild = findChildByName(target, targetChildName);
-                    
-                    if (sourceChild != null && targetChild != null) {
-                        generateRulesForNodes(
-                                sourceChild, 
-                                targetChild, 
-                                currentSourcePath, 
-                                currentTargetPath, 
-                                rules
-                        );
+    /**
+     * Re-maps a schema pair after either side changed. The rules of {@code previous} are split by the old object
+     * pairs they were generated under; a pair of new subtrees whose fingerprints match one of those old pairs gets
+     * its rules carried forward unchanged, so only the object pairs on the path to a change are matched again.
+     * A previous configuration that is missing, lacks either old schema or does not fit them is ignored and
+     * everything is regenerated.
+     */
+    public MappingConfiguration remapMapping(MappingConfiguration previous,
+                                             JsonNode previousSourceSchema, JsonNode previousTargetSchema,
+                                             JsonNode sourceSchema, JsonNode targetSchema) {
+        SchemaFingerprint fingerprints = new SchemaFingerprint();
+        Map<MappingResultCache.Key, List<MappingRule>> carried = CarriedRules.index(
+                previous != null ? previous.getRules() : null, previousSourceSchema, previousTargetSchema,
+                fingerprints);
+
+        List<MappingRule> rules = new ArrayList<>();
+        if (sourceSchema.getChildren() != null && targetSchema.getChildren() != null) {
+            metrics.observe(MappingMetrics.RULES, () -> {
+                // Concurrent traversal has no per-subtree lookups, so it re-maps sequentially
+                MatchResolver resolver = traversalMode == TraversalMode.BATCHED
+                        ? planMatches(List.<JsonNode[]>of(new JsonNode[]{sourceSchema, targetSchema}), fingerprints,
+                                key -> carried.containsKey(key) || resultCache.contains(key))
+                        : this::findBestMatches;
+                generateRules(sourceSchema, targetSchema, new RuleRun(resolver, fingerprints, carried), rules::add);
+            });
+        }
+        return toConfiguration(rules);
+    }
+
+    /**
+     * Hands every rule to {@code onRule} as soon as it is produced instead of building a MappingConfiguration.
+     * Only the running totals for the summary are kept. In concurrent mode {@code onRule} is called from the
+     * mapping executor, one call at a time, in completion order.
+     */
+    public MappingSummary streamMapping(JsonNode sourceSchema, JsonNode targetSchema, Consumer<MappingRule> onRule) {
+        DoubleSummaryStatistics confidence = new DoubleSummaryStatistics();
+        Object lock = new Object();
+        metrics.observe(MappingMetrics.RULES, () -> generateRules(sourceSchema, targetSchema, traversalMode, rule -> {
+            synchronized (lock) {
+                confidence.accept(rule.getConfidenceScore());
+                onRule.accept(rule);
+            }
+        }, false));
+
+        MappingSummary summary = new MappingSummary();
+        summary.setRuleCount(confidence.getCount());
+        summary.setOverallConfidence(confidence.getAverage());
+        summary.setNotes(NOTES);
+        return summary;
+    }
+
+    /**
+     * Maps many schema pairs as one job. Each distinct document is parsed once, in parallel on the mapping
+     * executor, and all pairs are planned together level by level as in {@link TraversalMode#BATCHED}, so field
+     * groups that repeat anywhere in the batch are matched once and share one LLM lookup. Results go to
+     * {@code onResult} in pair order; a pair whose documents fail to parse gets a result with only an error.
+     */
+    public void generateMappings(List<SchemaPair> pairs, Consumer<BulkMappingResult> onResult) {
+        Map<String, CompletableFuture<JsonNode>> parsing = new HashMap<>();
+        List<CompletableFuture<JsonNode>> sources = new ArrayList<>(pairs.size());
+        List<CompletableFuture<JsonNode>> targets = new ArrayList<>(pairs.size());
+        for (SchemaPair pair : pairs) {
+            sources.add(parsing.computeIfAbsent(pair.sourceJson(), this::parseAsync));
+            targets.add(parsing.computeIfAbsent(pair.targetJson(), this::parseAsync));
+        }
+
+        JsonNode[][] schemas = new JsonNode[pairs.size()][];
+        String[] errors = new String[pairs.size()];
+        List<JsonNode[]> roots = new ArrayList<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            try {
+                schemas[i] = new JsonNode[]{join(sources.get(i)), join(targets.get(i))};
+            } catch (RuntimeException e) {
+                errors[i] = String.valueOf(e.getMessage());
+                continue;
+            }
+            if (schemas[i][0].getChildren() != null && schemas[i][1].getChildren() != null) {
+                roots.add(schemas[i]);
+            }
+        }
+
+        SchemaFingerprint fingerprints = new SchemaFingerprint();
+        RuleRun run = metrics.observe(MappingMetrics.RULES, () ->
+                new RuleRun(planMatches(roots, fingerprints, resultCache::contains), fingerprints, Map.of()));
+        for (int i = 0; i < pairs.size(); i++) {
+            BulkMappingResult result = new BulkMappingResult();
+            result.setIndex(i);
+            if (errors[i] != null) {
+                result.setError(errors[i]);
+            } else {
+                JsonNode[] schema = schemas[i];
+                List<MappingRule> rules = new ArrayList<>();
+                metrics.observe(MappingMetrics.RULES, () -> generateRules(schema[0], schema[1], run, rules::add));
+                result.setConfiguration(toConfiguration(rules));
+            }
+            onResult.accept(result);
+        }
+    }
+
+    private CompletableFuture<JsonNode> parseAsync(String json) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return schemaParser.parse(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        }, mappingExecutor);
+    }
+
+    // Returns whether every semantic lookup finished
+    private boolean generateRules(JsonNode sourceSchema, JsonNode targetSchema, TraversalMode mode,
+                                  Consumer<MappingRule> sink, boolean ordered) {
+        // Process root level fields
+        if (sourceSchema.getChildren() == null || targetSchema.getChildren() == null) {
+            return true;
+        }
+
+        SchemaFingerprint fingerprints = new SchemaFingerprint();
+        if (mode == TraversalMode.CONCURRENT) {
+            // Concurrent runs only use and fill the entry for the whole schema pair
+            MappingResultCache.Key key = fingerprints.key(sourceSchema, targetSchema);
+            List<MappingRule> cached = resultCache.get(key);
+            if (cached != null) {
+                cached.forEach(rule -> sink.accept(rebase(rule, "", "")));
+                return true;
+            }
+            AtomicBoolean complete = new AtomicBoolean(true);
+            List<MappingRule> rules = join(generateChildRulesConcurrently(
+                    sourceSchema, targetSchema, "", "", ordered ? null : sink, complete));
+            if (ordered && complete.get()) {
+                resultCache.put(key, rules);
+            }
+            rules.forEach(sink);
+            return complete.get();
+        }
+
+        MatchResolver resolver = mode == TraversalMode.BATCHED
+                ? planMatches(List.<JsonNode[]>of(new JsonNode[]{sourceSchema, targetSchema}), fingerprints,
+                        resultCache::contains)
+                : this::findBestMatches;
+        return generateRules(sourceSchema, targetSchema, new RuleRun(resolver, fingerprints, Map.of()), sink);
+    }
+
+    private boolean generateRules(JsonNode sourceSchema, JsonNode targetSchema, RuleRun run,
+                                  Consumer<MappingRule> sink) {
+        if (sourceSchema.getChildren() == null || targetSchema.getChildren() == null) {
+            return true;
+        }
+        return generateChildRules(sourceSchema, targetSchema, "", "", sink, run);
+    }
+
+    /**
+     * Rules for the matched children of an object pair. If a pair of subtrees with the same fingerprints was
+     * mapped before, its rules are replayed (from the run's carried rules or the cache) under the current paths;
+     * otherwise rules go to the sink as they are generated. Once the subtree is done the pair is cached as its own
+     * leaf rules plus references to its child pairs, unless a semantic lookup under it gave up and fell back to
+     * weaker matches, or a child pair did not make it into the cache.
+     *
+     * @return whether every semantic lookup under the pair finished
+     */
+    private boolean generateChildRules(JsonNode source, JsonNode target, String sourcePath, String targetPath,
+                                    Consumer<MappingRule> sink, RuleRun run) {
+        MappingResultCache.Key key = run.fingerprints().key(source, target);
+        List<MappingRule> cached = run.carried().get(key);
+        if (cached == null) {
+            cached = resultCache.get(key);
+        }
+        if (cached != null) {
+            cached.forEach(rule -> sink.accept(rebase(rule, sourcePath, targetPath)));
+            return true;
+        }
+
+        List<MappingResultCache.Part> parts = resultCache.isEnabled() ? new ArrayList<>() : null;
+        FieldMatches childMatches = run.resolver().resolve(source, target);
+        boolean complete = childMatches.complete();
+        for (Map.Entry<String, String> match : childMatches.matches().entrySet()) {
+            JsonNode sourceChild = findChildByName(source, match.getKey());
+            JsonNode targetChild = findChildByName(target, match.getValue());
+            if (sourceChild == null || targetChild == null) {
+                continue;
+            }
+            String childSourcePath = childPath(sourcePath, sourceChild);
+            String childTargetPath = childPath(targetPath, targetChild);
+
+            if (isLeaf(sourceChild)) {
+                MappingRule rule = createLeafRule(sourceChild, targetChild, childSourcePath, childTargetPath);
+                sink.accept(rule);
+                if (parts != null) {
+                    parts.add(MappingResultCache.Part.of(relativize(rule, sourcePath, targetPath)));
+                }
+            } else if (targetChild.getChildren() != null) {
+                complete &= generateChildRules(sourceChild, targetChild, childSourcePath, childTargetPath, sink, run);
+                if (parts != null) {
+                    parts.add(MappingResultCache.Part.child(sourceChild.getName(), targetChild.getName(),
+                            run.fingerprints().key(sourceChild, targetChild)));
+                }
+            }
+        }
+
+        if (complete && parts != null && parts.stream()
+                .allMatch(part -> part.child() == null || resultCache.contains(part.child()))) {
+            resultCache.putParts(key, parts);
+        }
+        return complete;
+    }
+
+    private static String childPath(String path, JsonNode child) {
+        return path.isEmpty() ? child.getName() : path + "." + child.getName();
+    }
+
+    private static MappingRule rebase(MappingRule relative, String sourcePath, String targetPath) {
+        MappingRule rule = new MappingRule();
+        rule.setSourcePath(sourcePath.isEmpty() ? relative.getSourcePath() : sourcePath + "." + relative.getSourcePath());
+        rule.setTargetPath(targetPath.isEmpty() ? relative.getTargetPath() : targetPath + "." + relative.getTargetPath());
+        rule.setTransformation(relative.getTransformation());
+        rule.setConfidenceScore(relative.getConfidenceScore());
+        return rule;
+    }
+
+    private static MappingRule relativize(MappingRule rule, String sourcePath, String targetPath) {
+        MappingRule relative = new MappingRule();
+        relative.setSourcePath(sourcePath.isEmpty() ? rule.getSourcePath() : rule.getSourcePath().substring(sourcePath.length() + 1));
+        relative.setTargetPath(targetPath.isEmpty() ? rule.getTargetPath() : rule.getTargetPath().substring(targetPath.length() + 1));
+        relative.setTransformation(rule.getTransformation());
+        relative.setConfidenceScore(rule.getConfidenceScore());
+        return relative;
+    }
+
+    private MappingRule createLeafRule(JsonNode source, JsonNode target, String sourcePath, String targetPath) {
+        MappingRule rule = new MappingRule();
+        rule.setSourcePath(sourcePath);
+        rule.setTargetPath(targetPath);
+        rule.setTransformation("direct");
+
+        // Confidence based on similarity score
+        double similarity = similarityService.calculateCombinedSimilarity(source, target);
+        rule.setConfidenceScore(similarity);
+
+        return rule;
+    }
+
+    /**
+     * Matches the children of a source/target pair on the mapping executor and fans out one task per matched
+     * sibling. Each subtree returns its own rule list and the lists are joined in source field order, so the
+     * result does not depend on which subtree finishes first. When a {@code streamingSink} is given, leaf rules go
+     * straight to it instead and the returned lists stay empty. A semantic lookup that gave up clears {@code complete}.
+     */
+    private CompletableFuture<List<MappingRule>> generateChildRulesConcurrently(JsonNode source, JsonNode target,
+                                                                             String sourcePath, String targetPath,
+                                                                             Consumer<MappingRule> streamingSink,
+                                                                             AtomicBoolean complete) {
+        return CompletableFuture
+                .supplyAsync(() -> findBestMatches(source, target), mappingExecutor)
+                .thenCompose(childMatches -> {
+                    if (!childMatches.complete()) {
+                        complete.set(false);
+                    }
+                    List<CompletableFuture<List<MappingRule>>> subtrees = new ArrayList<>();
+                    for (JsonNode sourceChild : source.getChildren()) {
+                        String targetChildName = childMatches.matches().get(sourceChild.getName());
+                        JsonNode targetChild = targetChildName != null ? findChildByName(target, targetChildName) : null;
+                        if (targetChild != null) {
+                            subtrees.add(generateRulesConcurrently(
+                                    sourceChild, targetChild, sourcePath, targetPath, streamingSink, complete));
+                        }
                     }
+
+                    return CompletableFuture.allOf(subtrees.toArray(CompletableFuture[]::new))
+                            .thenApply(done -> {
+                                List<MappingRule> rules = new ArrayList<>();
+                                subtrees.forEach(subtree -> rules.addAll(subtree.join()));
+                                return rules;
+                            });
                 });
+    }
+
+    private CompletableFuture<List<MappingRule>> generateRulesConcurrently(JsonNode source, JsonNode target,
+                                                                        String sourcePath, String targetPath,
+                                                                        Consumer<MappingRule> streamingSink,
+                                                                        AtomicBoolean complete) {
+        String currentSourcePath = sourcePath.isEmpty() ? source.getName() : sourcePath + "." + source.getName();
+        String currentTargetPath = targetPath.isEmpty() ? target.getName() : targetPath + "." + target.getName();
+
+        if (isLeaf(source)) {
+            MappingRule rule = createLeafRule(source, target, currentSourcePath, currentTargetPath);
+            if (streamingSink != null) {
+                streamingSink.accept(rule);
+                return CompletableFuture.completedFuture(List.of());
+            }
+            return CompletableFuture.completedFuture(List.of(rule));
+        }
+        if (target.getChildren() == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return generateChildRulesConcurrently(source, target, currentSourcePath, currentTargetPath, streamingSink,
+                complete);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw e;
         }
     }
 
-    public JsonNode parseJsonSchema(String json) throws Exception {
-        com.fasterxml.jackson.databind.JsonNode rootNode = objectMapper.readTree(json);
-        return convertJsonNode(rootNode, "");
+    private FieldMatches findBestMatches(JsonNode source, JsonNode target) {
+        return similarityService.findBestMatches(source.getChildren(), target.getChildren());
     }
 
-    private JsonNode convertJsonNode(com.fasterxml.jackson.databind.JsonNode node, String name) {
-        JsonNode result = new JsonNode();
-        result.setName(name);
+    /**
+     * Resolves the matches for every object pair that generateChildRules will visit, one tree level at a time,
+     * so the LLM is asked once per level (or per chunk of a level) instead of once per object. Several root pairs
+     * are planned together; a node pair reached more than once is only expanded the first time, and pairs whose
+     * rules are already in the result cache are not planned at all.
+     */
+    private MatchResolver planMatches(List<JsonNode[]> roots, SchemaFingerprint fingerprints,
+                                      Predicate<MappingResultCache.Key> known) {
+        Map<JsonNode, Map<JsonNode, FieldMatches>> planned = new IdentityHashMap<>();
+        List<JsonNode[]> level = roots.stream()
+                .filter(pair -> !known.test(fingerprints.key(pair[0], pair[1])))
+                .toList();
+        while (!level.isEmpty()) {
+            List<FieldGroup> groups = level.stream()
+                    .map(pair -> new FieldGroup(pair[0].getChildren(), pair[1].getChildren()))
+                    .toList();
+            List<FieldMatches> levelMatches = similarityService.findBestMatchesBatch(groups);
 
-        if (node.isObject()) {
-            result.setType("object");
-            List<JsonNode> children = new ArrayList<>();
-            node.fields().forEachRemaining(entry -> {
-                children.add(convertJsonNode(entry.getValue(), entry.getKey()));
-            });
-            result.setChildren(children);
-        } else if (node.isArray()) {
-            result.setType("array");
-            if (!node.isEmpty()) {
-                // For arrays, we'll just look at the first element to determine structure
-                result.setChildren(List.of(convertJsonNode(node.get(0), "item")));
+            List<JsonNode[]> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                JsonNode source = level.get(i)[0];
+                JsonNode target = level.get(i)[1];
+                FieldMatches matches = levelMatches.get(i);
+                if (planned.computeIfAbsent(source, k -> new IdentityHashMap<>()).putIfAbsent(target, matches) != null) {
+                    continue;
+                }
+
+                matches.matches().forEach((sourceChildName, targetChildName) -> {
+                    JsonNode sourceChild = findChildByName(source, sourceChildName);
+                    JsonNode targetChild = findChildByName(target, targetChildName);
+                    if (sourceChild != null && targetChild != null
+                            && !isLeaf(sourceChild) && targetChild.getChildren() != null
+                            && !known.test(fingerprints.key(sourceChild, targetChild))) {
+                        nextLevel.add(new JsonNode[]{sourceChild, targetChild});
+                    }
+                });
             }
-        } else if (node.isTextual()) {
-            result.setType("string");
-        } else if (node.isNumber()) {
-            result.setType("number");
-        } else if (node.isBoolean()) {
-            result.setType("boolean");
-        } else if (node.isNull()) {
-            result.setType("null");
+            level = nextLevel;
         }
 
-        return result;
+        return (source, target) -> {
+            FieldMatches matches = planned.getOrDefault(source, Map.of()).get(target);
+            return matches != null ? matches : findBestMatches(source, target);
+        };
+    }
+
+    private static boolean isLeaf(JsonNode node) {
+        return node.getChildren() == null || node.getChildren().isEmpty();
+    }
+
+    public JsonNode parseJsonSchema(String json) throws Exception {
+        return schemaParser.parse(json);
     }
 
     private JsonNode findChildByName(JsonNode parent, String name) {
@@ -141,4 +488,17 @@ public class EnhancedMappingService {
                 .findFirst()
                 .orElse(null);
     }
-}
\ No newline at end of file
+
+    // Supplies the child matches for a source/target object pair
+    @FunctionalInterface
+    private interface MatchResolver {
+        FieldMatches resolve(JsonNode source, JsonNode target);
+    }
+
+    // Per-run state of a rule generation: how to match children, the run's fingerprints, and rules carried over
+    // from a previous mapping by subtree pair
+    private record RuleRun(MatchResolver resolver, SchemaFingerprint fingerprints,
+                           Map<MappingResultCache.Key, List<MappingRule>> carried) {}
+
+    record CheckedMapping(MappingConfiguration configuration, boolean complete) {}
+}
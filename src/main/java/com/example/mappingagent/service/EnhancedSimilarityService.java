@@ -2,56 +2,146 @@ package com.example.mappingagent.service;
 
 import com.example.mappingagent.model.JsonNode;
 import com.example.mappingagent.service.LLMService;
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class EnhancedSimilarityService {
 
-    private final LevenshteinDistance levenshteinDistance = new LevenshteinDistance();
+    private static final double SIMILARITY_THRESHOLD = 0.6;
+    private static final double NAME_WEIGHT = 0.7;
+    private static final double TYPE_WEIGHT = 0.3;
+
     private final LLMService llmService;
-    private final Map<String, String> synonymCache = new HashMap<>();
+    private final EmbeddingMatcher embeddingMatcher;
+    private final SynonymStore synonymStore;
+    private final SemanticMatching semanticMatching;
+    private final NameSimilarityScorer nameScorer;
+    private final long parallelScoringThreshold;
+    private final int indexMinTargets;
+    private final int indexCandidates;
+    private final MappingMetrics metrics;
 
-    public EnhancedSimilarityService(LLMService llmService) {
+    public EnhancedSimilarityService(LLMService llmService,
+                                     EmbeddingMatcher embeddingMatcher,
+                                     SynonymStore synonymStore,
+                                     NameSimilarityScorer nameScorer,
+                                     MappingMetrics metrics,
+                                     @Value("${mapping.semantic.matcher:llm}") SemanticMatching semanticMatching,
+                                     @Value("${mapping.similarity.parallel-threshold:10000}") long parallelScoringThreshold,
+                                     @Value("${mapping.similarity.index-min-targets:64}") int indexMinTargets,
+                                     @Value("${mapping.similarity.index-candidates:16}") int indexCandidates) {
         this.llmService = llmService;
+        this.embeddingMatcher = embeddingMatcher;
+        this.synonymStore = synonymStore;
+        this.semanticMatching = semanticMatching;
+        this.nameScorer = nameScorer;
+        this.metrics = metrics;
+        this.parallelScoringThreshold = parallelScoringThreshold;
+        this.indexMinTargets = indexMinTargets;
+        this.indexCandidates = indexCandidates;
     }
 
-    public Map<String, String> findBestMatches(List<JsonNode> sourceNodes, List<JsonNode> targetNodes) {
-        // First try exact matches
-        Map<String, String> exactMatches = findExactMatches(sourceNodes, targetNodes);
-        
+    public FieldMatches findBestMatches(List<JsonNode> sourceNodes, List<JsonNode> targetNodes) {
+        // First try exact matches and known synonyms
+        PendingMatches pending = prepareMatches(sourceNodes, targetNodes);
+
+        // Then try semantic matching, by the LLM or by embeddings
+        FieldGroup remaining = pending.remaining();
+        FieldMatches semanticMatches = semanticMatching == SemanticMatching.EMBEDDING
+                ? embeddingMatcher.findMatches(remaining.sourceFields(), remaining.targetFields())
+                : llmService.findSemanticMatches(remaining.sourceFields(), remaining.targetFields());
+
+        return completeMatches(pending, semanticMatches);
+    }
+
+    /**
+     * Same as {@link #findBestMatches} for many groups at once, sharing the semantic matching calls between them. Groups with
+     * the same {@link FieldGroup#signature()} are matched once and share the resulting map.
+     */
+    public List<FieldMatches> findBestMatchesBatch(List<FieldGroup> groups) {
+        Map<String, Integer> distinctIndexes = new HashMap<>();
+        List<FieldGroup> distinctGroups = new ArrayList<>();
+        int[] slots = new int[groups.size()];
+        for (int i = 0; i < groups.size(); i++) {
+            FieldGroup group = groups.get(i);
+            slots[i] = distinctIndexes.computeIfAbsent(group.signature(), k -> {
+                distinctGroups.add(group);
+                return distinctGroups.size() - 1;
+            });
+        }
+
+        List<PendingMatches> pending = distinctGroups.stream()
+                .map(group -> prepareMatches(group.sourceFields(), group.targetFields()))
+                .toList();
+
+        List<FieldGroup> remaining = pending.stream().map(PendingMatches::remaining).toList();
+        List<FieldMatches> semanticMatches = semanticMatching == SemanticMatching.EMBEDDING
+                ? embeddingMatcher.findMatchesBatch(remaining)
+                : llmService.findSemanticMatchesBatch(remaining);
+
+        List<FieldMatches> distinctResults = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            distinctResults.add(completeMatches(pending.get(i), semanticMatches.get(i)));
+        }
+
+        List<FieldMatches> results = new ArrayList<>(groups.size());
+        for (int slot : slots) {
+            results.add(distinctResults.get(slot));
+        }
+        return results;
+    }
+
+    private PendingMatches prepareMatches(List<JsonNode> sourceNodes, List<JsonNode> targetNodes) {
+        Map<String, String> exactMatches = metrics.observe(MappingMetrics.EXACT,
+                () -> findExactMatches(sourceNodes, targetNodes));
+
         // Get remaining fields
-        List<JsonNode> remainingSources = sourceNodes.stream()
+        List<JsonNode> unmatchedSources = sourceNodes.stream()
                 .filter(n -> !exactMatches.containsKey(n.getName())).toList();
+        List<JsonNode> unmatchedTargets = targetNodes.stream()
+                .filter(n -> !exactMatches.containsValue(n.getName())).toList();
 
+        // Pairs learned from accepted mappings resolve locally, without asking the LLM
+        Map<String, String> synonymMatches = metrics.observe(MappingMetrics.SYNONYM,
+                () -> synonymStore.findMatches(unmatchedSources, unmatchedTargets));
 
-        List<JsonNode> remainingTargets = targetNodes.stream()
-                .filter(n -> !exactMatches.containsValue(n.getName())).toList();
+        List<JsonNode> remainingSources = unmatchedSources.stream()
+                .filter(n -> !synonymMatches.containsKey(n.getName())).toList();
+        List<JsonNode> remainingTargets = unmatchedTargets.stream()
+                .filter(n -> !synonymMatches.containsValue(n.getName())).toList();
 
-        
-        // Then try LLM-powered semantic matching
-        Map<String, String> semanticMatches = llmService.findSemanticMatches(remainingSources, remainingTargets);
+        return new PendingMatches(exactMatches, synonymMatches, new FieldGroup(remainingSources, remainingTargets));
+    }
 
+    private FieldMatches completeMatches(PendingMatches pending, FieldMatches semantic) {
         // Then fall back to string similarity
-        Map<String, String> similarityMatches = findSimilarityMatches(remainingSources.stream()
-                        .filter(n -> !semanticMatches.containsKey(n.getName())).toList(),
-        remainingTargets.stream()
-                .filter(n -> !semanticMatches.containsValue(n.getName())).toList()
-        );
-        
+        Map<String, String> semanticMatches = semantic.matches();
+        Map<String, String> similarityMatches = metrics.observe(MappingMetrics.SIMILARITY,
+                () -> findSimilarityMatches(pending.remaining().sourceFields().stream()
+                                .filter(n -> !semanticMatches.containsKey(n.getName())).toList(),
+                        pending.remaining().targetFields().stream()
+                                .filter(n -> !semanticMatches.containsValue(n.getName())).toList()
+                ));
+        metrics.recordMatches(pending.exactMatches().size(), pending.synonymMatches().size(),
+                semanticMatches.size(), similarityMatches.size());
+
         // Combine all matches
         Map<String, String> allMatches = new HashMap<>();
-        allMatches.putAll(exactMatches);
+        allMatches.putAll(pending.exactMatches());
+        allMatches.putAll(pending.synonymMatches());
         allMatches.putAll(semanticMatches);
         allMatches.putAll(similarityMatches);
-        
-        return allMatches;
+
+        return new FieldMatches(allMatches, semantic.complete());
     }
 
     private Map<String, String> findExactMatches(List<JsonNode> sourceNodes, List<JsonNode> targetNodes) {
@@ -72,49 +162,78 @@ public class EnhancedSimilarityService {
 
     private Map<String, String> findSimilarityMatches(List<JsonNode> sources, List<JsonNode> targets) {
         Map<String, String> matches = new HashMap<>();
-        Map<String, Double> bestScores = new HashMap<>();
-        
-        for (JsonNode source : sources) {
-            for (JsonNode target : targets) {
-                double similarity = calculateCombinedSimilarity(source, target);
-                
-                // Only consider matches above threshold
-                if (similarity > 0.6) {
-                    if (!bestScores.containsKey(source.getName()) || 
-                        bestScores.get(source.getName()) < similarity) {
-                        bestScores.put(source.getName(), similarity);
-                        matches.put(source.getName(), target.getName());
-                    }
+        if (sources.isEmpty() || targets.isEmpty()) {
+            return matches;
+        }
+
+        // Normalize every name once; wide target lists only score the top candidates from the trigram index
+        boolean useIndex = targets.size() >= indexMinTargets;
+        FieldIndex targetIndex = useIndex ? new FieldIndex(targets) : null;
+        char[][] sourceNames = normalizedNames(sources);
+        char[][] targetNames = useIndex ? null : normalizedNames(targets);
+
+        double[][] scores = new double[sources.size()][];
+        IntStream rows = IntStream.range(0, sources.size());
+        if (parallelScoringThreshold > 0 && (long) sources.size() * targets.size() >= parallelScoringThreshold) {
+            rows = rows.parallel();
+        }
+        rows.forEach(i -> {
+            JsonNode source = sources.get(i);
+            double[] row = new double[targets.size()];
+            if (useIndex) {
+                for (int j : targetIndex.candidates(source.getName(), indexCandidates)) {
+                    row[j] = thresholdedSimilarity(source, sourceNames[i], targets.get(j), targetIndex.normalizedName(j));
+                }
+            } else {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = thresholdedSimilarity(source, sourceNames[i], targets.get(j), targetNames[j]);
                 }
             }
+            scores[i] = row;
+        });
+
+        // Only consider matches above threshold, and never give one target to two sources
+        int[] assignment = AssignmentSolver.maximize(scores, SIMILARITY_THRESHOLD);
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] != AssignmentSolver.UNASSIGNED) {
+                matches.put(sources.get(i).getName(), targets.get(assignment[i]).getName());
+            }
         }
         
         return matches;
     }
 
+    private static char[][] normalizedNames(List<JsonNode> fields) {
+        return fields.stream()
+                .map(n -> FieldNames.normalize(n.getName()).toCharArray())
+                .toArray(char[][]::new);
+    }
+
     protected double calculateCombinedSimilarity(JsonNode source, JsonNode target) {
-        double nameSimilarity = calculateNameSimilarity(source.getName(), target.getName());
-        double typeSimilarity = source.getType().equals(target.getType()) ? 1.0 : 0.0;
-        
-        // Weighted combination favoring name similarity
-        return 0.7 * nameSimilarity + 0.3 * typeSimilarity;
+        double nameSimilarity = nameScorer.similarity(
+                FieldNames.normalize(source.getName()), FieldNames.normalize(target.getName()));
+        return combine(nameSimilarity, typeSimilarity(source, target));
     }
 
-    private double calculateNameSimilarity(String name1, String name2) {
-        String normalized1 = normalizeName(name1);
-        String normalized2 = normalizeName(name2);
-        
-        int maxLength = Math.max(normalized1.length(), normalized2.length());
-        if (maxLength == 0) return 1.0;
-        
-        int distance = levenshteinDistance.apply(normalized1, normalized2);
-        return 1.0 - (double) distance / maxLength;
+    // Exact combined score for pairs that can pass SIMILARITY_THRESHOLD; anything else scores below it
+    private double thresholdedSimilarity(JsonNode source, char[] normalizedSource,
+                                         JsonNode target, char[] normalizedTarget) {
+        double typeSimilarity = typeSimilarity(source, target);
+        double minNameSimilarity = (SIMILARITY_THRESHOLD - TYPE_WEIGHT * typeSimilarity) / NAME_WEIGHT;
+        double nameSimilarity = nameScorer.similarity(normalizedSource, normalizedTarget, minNameSimilarity);
+        return combine(nameSimilarity, typeSimilarity);
     }
 
-    private String normalizeName(String name) {
-        return name.toLowerCase()
-                .replace("_", "")
-                .replace("-", "")
-                .replace(" ", "");
+    private static double typeSimilarity(JsonNode source, JsonNode target) {
+        return source.getType().equals(target.getType()) ? 1.0 : 0.0;
     }
-}
\ No newline at end of file
+
+    private static double combine(double nameSimilarity, double typeSimilarity) {
+        // Weighted combination favoring name similarity
+        return NAME_WEIGHT * nameSimilarity + TYPE_WEIGHT * typeSimilarity;
+    }
+
+    // Exact and synonym matches for one group plus the fields they left unmatched
+    private record PendingMatches(Map<String, String> exactMatches, Map<String, String> synonymMatches,
+                                  FieldGroup remaining) {}
+}
@@ -0,0 +1,32 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+
+import java.util.List;
+
+// The children of one source object and one target object that still need to be matched
+public record FieldGroup(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+
+    public boolean isEmpty() {
+        return sourceFields.isEmpty() || targetFields.isEmpty();
+    }
+
+    public int fieldCount() {
+        return sourceFields.size() + targetFields.size();
+    }
+
+    // Names and types of both sides in order; groups with equal signatures always match the same way
+    public String signature() {
+        StringBuilder signature = new StringBuilder();
+        appendFields(signature, sourceFields);
+        signature.append('\u0002');
+        appendFields(signature, targetFields);
+        return signature.toString();
+    }
+
+    private static void appendFields(StringBuilder signature, List<JsonNode> fields) {
+        for (JsonNode field : fields) {
+            signature.append(field.getName()).append('\u0000').append(field.getType()).append('\u0001');
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Candidate index over one list of fields: every name is normalized once and its character trigrams, the bigrams
+ * at its start and end, and its camelCase/snake_case tokens go into an inverted index. {@link #candidates} returns
+ * the fields sharing the most of these with a query name, so the expensive scoring only runs on those.
+ */
+final class FieldIndex {
+
+    // Boundary markers so short names and prefixes/suffixes still produce trigrams
+    private static final char START = '\u0002';
+    private static final char END = '\u0003';
+    // Fills the third slot of the first and last bigram, which keeps them apart from trigrams
+    private static final char BIGRAM = '\u0001';
+    // A shared token says more than a single shared trigram
+    private static final int TOKEN_WEIGHT = 2;
+
+    private final List<JsonNode> fields;
+    private final String[] normalizedNames;
+    private final char[][] normalizedChars;
+    private final Map<Long, int[]> trigramPostings;
+    private final Map<String, int[]> tokenPostings;
+
+    FieldIndex(List<JsonNode> fields) {
+        this.fields = fields;
+        this.normalizedNames = new String[fields.size()];
+        this.normalizedChars = new char[fields.size()][];
+
+        Map<Long, IntList> trigrams = new HashMap<>();
+        Map<String, IntList> tokens = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).getName();
+            normalizedNames[i] = FieldNames.normalize(name);
+            normalizedChars[i] = normalizedNames[i].toCharArray();
+            for (long trigram : trigrams(normalizedNames[i])) {
+                trigrams.computeIfAbsent(trigram, k -> new IntList()).addOnce(i);
+            }
+            for (String token : FieldNames.tokens(name)) {
+                tokens.computeIfAbsent(token, k -> new IntList()).addOnce(i);
+            }
+        }
+
+        this.trigramPostings = new HashMap<>(trigrams.size() * 2);
+        trigrams.forEach((trigram, postings) -> trigramPostings.put(trigram, postings.toArray()));
+        this.tokenPostings = new HashMap<>(tokens.size() * 2);
+        tokens.forEach((token, postings) -> tokenPostings.put(token, postings.toArray()));
+    }
+
+    int size() {
+        return fields.size();
+    }
+
+    JsonNode field(int index) {
+        return fields.get(index);
+    }
+
+    char[] normalizedName(int index) {
+        return normalizedChars[index];
+    }
+
+    /**
+     * Indexes of at most {@code k} fields that share grams or tokens with {@code name}, best first.
+     * Fields sharing nothing with the name are never returned.
+     */
+    int[] candidates(String name, int k) {
+        String normalized = FieldNames.normalize(name);
+        int[] overlap = new int[fields.size()];
+        for (long trigram : trigrams(normalized)) {
+            int[] postings = trigramPostings.get(trigram);
+            if (postings != null) {
+                for (int field : postings) {
+                    overlap[field]++;
+                }
+            }
+        }
+        for (String token : FieldNames.tokens(name)) {
+            int[] postings = tokenPostings.get(token);
+            if (postings != null) {
+                for (int field : postings) {
+                    overlap[field] += TOKEN_WEIGHT;
+                }
+            }
+        }
+
+        // Partial selection of the k highest overlaps; k is small compared to the field count
+        int[] best = new int[Math.min(k, fields.size())];
+        int found = 0;
+        for (int field = 0; field < overlap.length; field++) {
+            if (overlap[field] == 0) {
+                continue;
+            }
+            if (found < best.length) {
+                best[found++] = field;
+            } else if (better(field, best[found - 1], overlap, normalized.length())) {
+                best[found - 1] = field;
+            } else {
+                continue;
+            }
+            for (int i = found - 1; i > 0 && better(best[i], best[i - 1], overlap, normalized.length()); i--) {
+                int swap = best[i];
+                best[i] = best[i - 1];
+                best[i - 1] = swap;
+            }
+        }
+        return found == best.length ? best : Arrays.copyOf(best, found);
+    }
+
+    // More shared grams first; on a tie the closer length, which bounds the edit distance from below
+    private boolean better(int field, int other, int[] overlap, int length) {
+        if (overlap[field] != overlap[other]) {
+            return overlap[field] > overlap[other];
+        }
+        return Math.abs(normalizedChars[field].length - length) < Math.abs(normalizedChars[other].length - length);
+    }
+
+    private static long[] trigrams(String normalized) {
+        int length = normalized.length();
+        if (length == 0) {
+            return new long[0];
+        }
+        long[] trigrams = new long[length + 2];
+        for (int i = 0; i < length; i++) {
+            trigrams[i] = gram(charAt(normalized, i - 1), charAt(normalized, i), charAt(normalized, i + 1));
+        }
+        // Short names with one typo share no trigram, e.g. "abc" and "axc", but they do share an end
+        trigrams[length] = gram(START, normalized.charAt(0), BIGRAM);
+        trigrams[length + 1] = gram(BIGRAM, normalized.charAt(length - 1), END);
+        return trigrams;
+    }
+
+    private static long gram(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+
+    private static char charAt(String normalized, int index) {
+        if (index < 0) return START;
+        if (index >= normalized.length()) return END;
+        return normalized.charAt(index);
+    }
+
+    // Growable postings list; fields are added in index order, so duplicates are always the last entry
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void addOnce(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.mappingagent.service;
+
+import java.util.Map;
+
+// Source to target field names found for one field group. Not complete when a semantic lookup behind them gave up
+// (timed out, was cut off or could not be parsed): good enough to use, but not to cache
+public record FieldMatches(Map<String, String> matches, boolean complete) {
+
+    public static FieldMatches of(Map<String, String> matches) {
+        return new FieldMatches(matches, true);
+    }
+
+    public static FieldMatches partial(Map<String, String> matches) {
+        return new FieldMatches(matches, false);
+    }
+}
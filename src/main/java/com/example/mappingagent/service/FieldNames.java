@@ -0,0 +1,75 @@
+package com.example.mappingagent.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Name normalization shared by the similarity services and the field index
+final class FieldNames {
+
+    private FieldNames() {
+    }
+
+    /**
+     * Lower-cases the name and drops '_', '-' and ' ' in one pass. Same result as
+     * {@code name.toLowerCase().replace("_", "").replace("-", "").replace(" ", "")} in the root locale.
+     */
+    static String normalize(String name) {
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) >= 0x80) {
+                // Non-ASCII case mapping depends on the locale and may change the length; keep the slow path
+                return name.toLowerCase().replace("_", "").replace("-", "").replace(" ", "");
+            }
+        }
+
+        char[] chars = new char[length];
+        int size = 0;
+        boolean changed = false;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c == '_' || c == '-' || c == ' ') {
+                changed = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                chars[size++] = (char) (c + ('a' - 'A'));
+                changed = true;
+            } else {
+                chars[size++] = c;
+            }
+        }
+        return changed ? new String(chars, 0, size) : name;
+    }
+
+    /**
+     * Splits camelCase, PascalCase, snake_case, kebab-case and spaced names into lower-case tokens,
+     * e.g. {@code "shippingAddress_ID"} becomes {@code [shipping, address, id]}.
+     */
+    static List<String> tokens(String name) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                if (start >= 0) {
+                    tokens.add(name.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+                continue;
+            }
+            boolean boundary = start >= 0 && Character.isUpperCase(c)
+                    && (Character.isLowerCase(name.charAt(i - 1)) || Character.isDigit(name.charAt(i - 1))
+                    || (i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1))
+                    && Character.isUpperCase(name.charAt(i - 1))));
+            if (boundary) {
+                tokens.add(name.substring(start, i).toLowerCase(Locale.ROOT));
+                start = i;
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(name.substring(start).toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+}
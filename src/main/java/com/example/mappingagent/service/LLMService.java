@@ -1,31 +1,91 @@
 package com.example.mappingagent.service;
 
 import com.example.mappingagent.model.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class LLMService {
 
+    private static final Logger log = LoggerFactory.getLogger(LLMService.class);
+
     private final ChatClient chatClient;
+    private final SemanticMatchCache matchCache;
+    private final ObjectMapper objectMapper;
+    private final LlmStreamingClient llmClient;
+    private final int batchMaxGroups;
+    private final int batchMaxFields;
+    private final MappingMetrics metrics;
 
-    public LLMService(ChatClient.Builder builder) {
+    public LLMService(ChatClient.Builder builder,
+                      SemanticMatchCache matchCache,
+                      ObjectMapper objectMapper,
+                      MappingMetrics metrics,
+                      LlmStreamingClient llmClient,
+                      @Value("${mapping.llm.batch.max-groups:20}") int batchMaxGroups,
+                      @Value("${mapping.llm.batch.max-fields:400}") int batchMaxFields) {
         this.chatClient = builder.build();
+        this.matchCache = matchCache;
+        this.objectMapper = objectMapper;
+        this.llmClient = llmClient;
+        this.batchMaxGroups = batchMaxGroups;
+        this.batchMaxFields = batchMaxFields;
+        this.metrics = metrics;
+    }
+
+    public FieldMatches findSemanticMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+        // Nothing left to match on one side, so there is nothing to ask the model
+        if (sourceFields.isEmpty() || targetFields.isEmpty()) {
+            return FieldMatches.of(Map.of());
+        }
+
+        return metrics.observe(MappingMetrics.SEMANTIC, () -> {
+            String key = SemanticMatchCache.key(sourceFields, targetFields);
+            Map<String, String> cached = matchCache.get(key);
+            if (cached != null) {
+                return FieldMatches.of(cached);
+            }
+            LlmStreamingClient.Completion answer = askForSemanticMatches(sourceFields, targetFields);
+            Set<String> sourceNames = names(sourceFields);
+            Set<String> targetNames = names(targetFields);
+            if (!answer.finished()) {
+                // Only whole lines count, the last one may end mid-name. Not cached, so the next request asks again
+                log.warn("LLM answer was cut off; using the matches from its complete lines");
+                return FieldMatches.partial(parseLlmResponse(completeLines(answer.text()), sourceNames, targetNames));
+            }
+            // A stopped answer may also end mid-name, in text that arrived with the line that completed it
+            Map<String, String> matches = parseLlmResponse(
+                    answer.stopped() ? completeLines(answer.text()) : answer.text(), sourceNames, targetNames);
+            matchCache.put(key, matches);
+            return FieldMatches.of(matches);
+        });
     }
 
-    public Map<String, String> findSemanticMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+    private LlmStreamingClient.Completion askForSemanticMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
         // Prepare the prompt
         String sourceFieldsStr = String.join(", ", sourceFields.stream().map(JsonNode::getName).toList());
         String targetFieldsStr = String.join(", ", targetFields.stream().map(JsonNode::getName).toList());
 
         String prompt = """
                 Analyze these two sets of field names from JSON schemas and suggest the most likely matches 
-                based on their semantic meaning. Return only the matching pairs in the format "source:target".
+                based on their semantic meaning. Return only the matching pairs in the format "source:target",
+                one pair per line.
                 
                 Source fields: %s
                 Target fields: %s
@@ -37,24 +97,22 @@ public class LLMService {
                 4. Related concepts (e.g., "price" and "amount")
                 """.formatted(sourceFieldsStr, targetFieldsStr);
 
-        String response = chatClient.prompt()
-                .user(prompt)
-                .call()
-                .content();
-
-        assert response != null;
-        return  parseLlmResponse(response);
-
+        // Once every source field has a target there is nothing left to wait for
+        Set<String> sourceNames = names(sourceFields);
+        Set<String> targetNames = names(targetFields);
+        return complete(prompt, () -> new MatchLines(sourceNames, targetNames));
     }
 
-    private Map<String, String> parseLlmResponse(String response) {
+    // Drops anything the model invented, so a bad pair can never overwrite a good one or get cached
+    private Map<String, String> parseLlmResponse(String response, Set<String> sourceNames, Set<String> targetNames) {
         Map<String, String> matches = new HashMap<>();
         String[] lines = response.split("\n");
         
         for (String line : lines) {
             if (line.contains(":")) {
                 String[] parts = line.split(":");
-                if (parts.length == 2) {
+                if (parts.length == 2 && sourceNames.contains(parts[0].trim())
+                        && targetNames.contains(parts[1].trim())) {
                     matches.put(parts[0].trim(), parts[1].trim());
                 }
             }
@@ -62,4 +120,223 @@ public class LLMService {
         
         return matches;
     }
-}
\ No newline at end of file
+
+    private static String completeLines(String text) {
+        int lastLine = text.lastIndexOf('\n');
+        return lastLine < 0 ? "" : text.substring(0, lastLine);
+    }
+
+    /**
+     * Matches many field groups with as few prompts as possible. Results are returned in the order of {@code groups}.
+     */
+    public List<FieldMatches> findSemanticMatchesBatch(List<FieldGroup> groups) {
+        return metrics.observe(MappingMetrics.SEMANTIC, () -> matchBatch(groups));
+    }
+
+    private List<FieldMatches> matchBatch(List<FieldGroup> groups) {
+        List<FieldMatches> results = new ArrayList<>(Collections.nCopies(groups.size(), FieldMatches.of(Map.of())));
+
+        // Identical groups share one slot in the prompt, and cached groups are left out entirely
+        Map<String, List<Integer>> pendingIndexes = new LinkedHashMap<>();
+        Map<String, FieldGroup> pendingGroups = new LinkedHashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            FieldGroup group = groups.get(i);
+            if (group.isEmpty()) {
+                continue;
+            }
+            String key = SemanticMatchCache.key(group.sourceFields(), group.targetFields());
+            if (!pendingGroups.containsKey(key)) {
+                Map<String, String> cached = matchCache.get(key);
+                if (cached != null) {
+                    results.set(i, FieldMatches.of(cached));
+                    continue;
+                }
+                pendingGroups.put(key, group);
+            }
+            pendingIndexes.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+
+        for (List<String> chunk : chunkGroups(pendingGroups)) {
+            List<FieldGroup> chunkGroups = chunk.stream().map(pendingGroups::get).toList();
+            List<Map<String, String>> answers = askForBatchMatches(chunkGroups);
+            for (int i = 0; i < chunk.size(); i++) {
+                String key = chunk.get(i);
+                // A chunk we could not parse is not cached, so the next request asks again
+                FieldMatches matches = FieldMatches.partial(Map.of());
+                if (answers != null) {
+                    matches = FieldMatches.of(answers.get(i));
+                    matchCache.put(key, matches.matches());
+                }
+                for (int index : pendingIndexes.get(key)) {
+                    results.set(index, matches);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private LlmStreamingClient.Completion complete(String prompt, Supplier<Predicate<CharSequence>> answerComplete) {
+        return llmClient.complete(prompt, () -> chatClient.prompt()
+                .user(prompt)
+                .stream()
+                .chatResponse(), answerComplete);
+    }
+
+    private List<List<String>> chunkGroups(Map<String, FieldGroup> groups) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int fields = 0;
+        for (Map.Entry<String, FieldGroup> entry : groups.entrySet()) {
+            int groupFields = entry.getValue().fieldCount();
+            if (!current.isEmpty() && (current.size() >= batchMaxGroups || fields + groupFields > batchMaxFields)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                fields = 0;
+            }
+            current.add(entry.getKey());
+            fields += groupFields;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private List<Map<String, String>> askForBatchMatches(List<FieldGroup> groups) {
+        StringBuilder groupsStr = new StringBuilder();
+        for (int i = 0; i < groups.size(); i++) {
+            FieldGroup group = groups.get(i);
+            groupsStr.append("Group ").append(i + 1).append('\n')
+                    .append("Source fields: ").append(joinNames(group.sourceFields())).append('\n')
+                    .append("Target fields: ").append(joinNames(group.targetFields())).append("\n\n");
+        }
+
+        String prompt = """
+                Analyze each numbered group of field names from two JSON schemas and suggest the most likely
+                matches based on their semantic meaning. Only match a source field to a target field of the same group.
+                
+                %s
+                Consider:
+                1. Synonyms (e.g., "customer" and "client")
+                2. Abbreviations (e.g., "addr" and "address")
+                3. Different naming conventions (e.g., "first_name" and "firstName")
+                4. Related concepts (e.g., "price" and "amount")
+                
+                Return only a JSON object that maps each group number to an object of "source": "target" pairs,
+                for example {"1": {"addr": "address"}, "2": {}}.
+                """.formatted(groupsStr);
+
+        // The answer is a single JSON object, so anything after it closes is not worth waiting for
+        LlmStreamingClient.Completion answer = complete(prompt, JsonObjectEnd::new);
+        if (!answer.finished()) {
+            log.warn("Batched LLM answer was cut off; falling back to similarity matching");
+            return null;
+        }
+        return parseBatchResponse(answer.text(), groups);
+    }
+
+    private List<Map<String, String>> parseBatchResponse(String response, List<FieldGroup> groups) {
+        int start = response == null ? -1 : response.indexOf('{');
+        int end = response == null ? -1 : response.lastIndexOf('}');
+        if (start < 0 || end <= start) {
+            log.warn("Batched LLM response did not contain a JSON object; falling back to similarity matching");
+            return null;
+        }
+
+        com.fasterxml.jackson.databind.JsonNode root;
+        try {
+            root = objectMapper.readTree(response.substring(start, end + 1));
+        } catch (Exception e) {
+            log.warn("Could not parse batched LLM response; falling back to similarity matching", e);
+            return null;
+        }
+
+        List<Map<String, String>> results = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            FieldGroup group = groups.get(i);
+            Set<String> sourceNames = names(group.sourceFields());
+            Set<String> targetNames = names(group.targetFields());
+
+            // Drop anything the model invented or took from another group
+            Map<String, String> matches = new HashMap<>();
+            root.path(String.valueOf(i + 1)).fields().forEachRemaining(entry -> {
+                String target = entry.getValue().asText().trim();
+                String source = entry.getKey().trim();
+                if (sourceNames.contains(source) && targetNames.contains(target)) {
+                    matches.put(source, target);
+                }
+            });
+            results.add(matches);
+        }
+        return results;
+    }
+
+    private static String joinNames(List<JsonNode> fields) {
+        return String.join(", ", fields.stream().map(JsonNode::getName).toList());
+    }
+
+    private static Set<String> names(List<JsonNode> fields) {
+        return fields.stream().map(JsonNode::getName).collect(Collectors.toSet());
+    }
+
+    // Reads "source:target" lines as they stream in and is satisfied once every source field has a known target
+    private static final class MatchLines implements Predicate<CharSequence> {
+        private final Set<String> unmatchedSources;
+        private final Set<String> targetNames;
+        private int parsed;
+
+        MatchLines(Set<String> sourceNames, Set<String> targetNames) {
+            this.unmatchedSources = new HashSet<>(sourceNames);
+            this.targetNames = targetNames;
+        }
+
+        @Override
+        public boolean test(CharSequence text) {
+            for (int i = parsed; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    String[] parts = text.subSequence(parsed, i).toString().split(":");
+                    if (parts.length == 2 && targetNames.contains(parts[1].trim())) {
+                        unmatchedSources.remove(parts[0].trim());
+                    }
+                    parsed = i + 1;
+                }
+            }
+            return unmatchedSources.isEmpty();
+        }
+    }
+
+    // Tracks brace depth outside of JSON strings and is satisfied once the first top-level object has closed
+    private static final class JsonObjectEnd implements Predicate<CharSequence> {
+        private int scanned;
+        private int depth;
+        private boolean opened;
+        private boolean inString;
+        private boolean escaped;
+
+        @Override
+        public boolean test(CharSequence text) {
+            for (; scanned < text.length(); scanned++) {
+                char c = text.charAt(scanned);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = opened;
+                } else if (c == '{') {
+                    depth++;
+                    opened = true;
+                } else if (c == '}' && depth > 0 && --depth == 0) {
+                    scanned++;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
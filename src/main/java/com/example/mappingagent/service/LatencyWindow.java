@@ -0,0 +1,39 @@
+package com.example.mappingagent.service;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latencies of some operation, for percentiles over a sliding window.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int size;
+    private int next;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    /**
+     * @return the latency below which the given share of the window falls, or -1 with fewer than minSamples samples
+     */
+    long percentile(double percentile, int minSamples) {
+        long[] sorted;
+        synchronized (this) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
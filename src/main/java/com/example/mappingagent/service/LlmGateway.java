@@ -0,0 +1,249 @@
+package com.example.mappingagent.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The one way to the model for every caller. Calls need a permit, and the number of permits adapts to the model
+ * (additive increase, multiplicative decrease): while the time to the first token stays within a tolerance of the
+ * fastest recently seen, a busy gateway slowly raises its limit; a slow first token, a timeout or a failure cut it.
+ * So the model is kept about as busy as it can be without queueing internally, and everything else waits here,
+ * interactive calls ahead of bulk ones. Identical calls in flight at the same time share one answer.
+ */
+@Component
+public class LlmGateway {
+
+    // How far the baseline moves towards each slower sample, so it can recover after the model got slower for good
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double latencyTolerance;
+    private final double backoff;
+    private final long queueTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter> interactiveQueue = new ArrayDeque<>();
+    private final ArrayDeque<Waiter> bulkQueue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long baselineNanos;
+
+    private final Map<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public LlmGateway(@Value("${mapping.llm.gateway.initial-limit:4}") int initialLimit,
+                      @Value("${mapping.llm.gateway.min-limit:1}") int minLimit,
+                      @Value("${mapping.llm.gateway.max-limit:16}") int maxLimit,
+                      @Value("${mapping.llm.gateway.latency-tolerance:2.0}") double latencyTolerance,
+                      @Value("${mapping.llm.gateway.backoff:0.9}") double backoff,
+                      @Value("${mapping.llm.gateway.queue-timeout:60s}") Duration queueTimeout) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+        this.backoff = backoff;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+    }
+
+    /**
+     * Runs {@code call} unless an identical call (same key) is already running, in which case its answer, or its
+     * exception, is shared instead.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String key, Supplier<T> call) {
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> running = calls.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return (T) running.join();
+            } catch (CompletionException e) {
+                // Followers see what the leader saw; a checked exception can only come through sneakily
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            T result = call.get();
+            own.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Anything thrown must complete the future, or every follower would wait on it forever
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, own);
+        }
+    }
+
+    /**
+     * Waits for a permit in the lane of {@code priority}, at most for the queue timeout.
+     *
+     * @return the permit, or null if none became free in time
+     */
+    public Permit acquire(LlmPriority priority) {
+        ArrayDeque<Waiter> queue = priority == LlmPriority.INTERACTIVE ? interactiveQueue : bulkQueue;
+        lock.lock();
+        try {
+            // Nobody overtakes a waiting call of the same or a higher lane
+            if (inFlight < limit && interactiveQueue.isEmpty() && (queue == interactiveQueue || bulkQueue.isEmpty())) {
+                inFlight++;
+                return new Permit();
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.addLast(waiter);
+            long remaining = queueTimeoutNanos;
+            try {
+                while (!waiter.granted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!waiter.granted) {
+                    queue.remove(waiter);
+                    throw new IllegalStateException("Interrupted while waiting for an LLM slot", e);
+                }
+            }
+            if (!waiter.granted) {
+                queue.remove(waiter);
+                rejected.increment();
+                return null;
+            }
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A permit only if one is free right now and nobody is waiting for it, e.g. for a hedged request.
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight < limit && interactiveQueue.isEmpty() && bulkQueue.isEmpty()) {
+                inFlight++;
+                return new Permit();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held
+    private void grantWaiting() {
+        while (inFlight < limit) {
+            Waiter next = interactiveQueue.pollFirst();
+            if (next == null) {
+                next = bulkQueue.pollFirst();
+            }
+            if (next == null) {
+                return;
+            }
+            inFlight++;
+            next.granted = true;
+            next.condition.signal();
+        }
+    }
+
+    private void returnPermit(long firstTokenNanos, boolean dropped) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= Math.floor(limit);
+            inFlight--;
+            if (dropped) {
+                limit = Math.max(minLimit, limit * backoff);
+            } else if (firstTokenNanos >= 0) {
+                if (baselineNanos == 0 || firstTokenNanos < baselineNanos) {
+                    baselineNanos = firstTokenNanos;
+                } else {
+                    baselineNanos += (long) ((firstTokenNanos - baselineNanos) * BASELINE_DRIFT);
+                }
+                if (firstTokenNanos > latencyTolerance * baselineNanos) {
+                    limit = Math.max(minLimit, limit * backoff);
+                } else if (saturated) {
+                    // About one more permit per limit's worth of fast answers
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            grantWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(limit, inFlight, interactiveQueue.size(), bulkQueue.size(),
+                    TimeUnit.NANOSECONDS.toMillis(baselineNanos), coalesced.sum(), rejected.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Stats(double limit, int inFlight, int interactiveQueued, int bulkQueued, long baselineMillis,
+                        long coalesced, long rejected) {}
+
+    private static final class Waiter {
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * One call's slot. It must be given back exactly once, by one of the three methods; later calls are ignored.
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        // The model answered; the time to its first token drives the limit
+        public void answered(long firstTokenNanos) {
+            if (released.compareAndSet(false, true)) {
+                returnPermit(firstTokenNanos, false);
+            }
+        }
+
+        // Timed out or failed, which the model's load may be to blame for
+        public void dropped() {
+            if (released.compareAndSet(false, true)) {
+                returnPermit(-1, true);
+            }
+        }
+
+        // Done without saying anything about the model's load, e.g. cancelled
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                returnPermit(-1, false);
+            }
+        }
+    }
+}
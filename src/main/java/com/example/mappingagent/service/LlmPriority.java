@@ -0,0 +1,9 @@
+package com.example.mappingagent.service;
+
+// Lanes of the LlmGateway queue; a free slot always goes to the longest waiting interactive call first
+public enum LlmPriority {
+    // Someone is waiting on the answer, like the chat and /cities endpoints
+    INTERACTIVE,
+    // Mapping prompts, which can take their turn
+    BULK
+}
@@ -0,0 +1,302 @@
+package com.example.mappingagent.service;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Issues LLM requests with deadlines. Mapping prompts are streamed so generation stops as soon as the answer is
+ * complete, and can be hedged: once a call has run longer than a percentile of recent calls, an identical second
+ * request starts and whichever answers first wins. Cancelling a stream closes its connection, which also stops
+ * generation on the model server. Every call takes a permit from the {@link LlmGateway}, and identical calls in
+ * flight at the same time share one answer.
+ */
+@Component
+public class LlmStreamingClient {
+
+    private static final int LATENCY_WINDOW = 256;
+
+    private final LlmGateway gateway;
+    private final MappingMetrics metrics;
+    private final Duration deadline;
+    private final Duration tokenTimeout;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final int hedgeMinSamples;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+
+    public LlmStreamingClient(LlmGateway gateway,
+                              MappingMetrics metrics,
+                              @Value("${mapping.llm.deadline:120s}") Duration deadline,
+                              @Value("${mapping.llm.token-timeout:30s}") Duration tokenTimeout,
+                              @Value("${mapping.llm.hedge.enabled:false}") boolean hedgeEnabled,
+                              @Value("${mapping.llm.hedge.percentile:0.95}") double hedgePercentile,
+                              @Value("${mapping.llm.hedge.min-samples:20}") int hedgeMinSamples) {
+        this.gateway = gateway;
+        this.metrics = metrics;
+        this.deadline = deadline;
+        this.tokenTimeout = tokenTimeout;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinSamples = hedgeMinSamples;
+    }
+
+    /**
+     * Text of an answer. It is unfinished when the deadline passed, or the next token did not arrive within the
+     * token timeout, before the model was done; the text is then whatever arrived until that point. It is stopped when the
+     * caller's predicate ended it early, in which case the text may end with part of the chunk after the point
+     * the predicate was satisfied at.
+     */
+    public record Completion(String text, boolean finished, boolean stopped) {
+    }
+
+    // firstTokenNanos is -1 when no text arrived
+    private record Attempt(Completion completion, long firstTokenNanos, boolean hedge) {
+    }
+
+    /**
+     * Streams the answer to a mapping prompt. Each attempt gets its own predicate from {@code answerComplete},
+     * which sees the text received so far after every chunk; once it returns true, generation is cancelled.
+     * Mapping prompts wait in the bulk lane; one that gets no permit in time comes back unfinished and empty.
+     */
+    public Completion complete(String prompt, Supplier<Flux<ChatResponse>> request,
+                               Supplier<Predicate<CharSequence>> answerComplete) {
+        return gateway.coalesce("mapping\u0000" + prompt, () -> {
+            LlmGateway.Permit permit = gateway.acquire(LlmPriority.BULK);
+            if (permit == null) {
+                metrics.recordLlmTimeout();
+                return new Completion("", false, false);
+            }
+            Attempt winner;
+            try {
+                winner = metrics.observeLlmRequest(() -> race(prompt, request, answerComplete));
+            } catch (RuntimeException e) {
+                permit.dropped();
+                throw e;
+            }
+            if (winner.completion().finished()) {
+                permit.answered(winner.firstTokenNanos());
+            } else {
+                permit.dropped();
+            }
+            return winner.completion();
+        });
+    }
+
+    private Attempt race(String prompt, Supplier<Flux<ChatResponse>> request,
+                            Supplier<Predicate<CharSequence>> answerComplete) {
+        Mono<Attempt> answer = attempt(prompt, request, answerComplete.get(), deadline, false);
+
+        long hedgeAfter = hedgeEnabled ? latencies.percentile(hedgePercentile, hedgeMinSamples) : -1;
+        AtomicBoolean hedged = new AtomicBoolean();
+        if (hedgeAfter >= 0 && hedgeAfter < deadline.toNanos()) {
+            // The hedge shares the deadline of the call. Only a finished attempt wins, so a first attempt that fails
+            // or stalls is covered by it too
+            Mono<Attempt> hedge = Mono.delay(Duration.ofNanos(hedgeAfter)).then(Mono.defer(() -> {
+                // Hedging into a saturated model would only queue behind other calls
+                LlmGateway.Permit permit = gateway.tryAcquire();
+                if (permit == null) {
+                    return Mono.<Attempt>empty();
+                }
+                hedged.set(true);
+                // Only the first attempt's permit feeds the limit, the hedge could skew it either way
+                return attempt(prompt, request, answerComplete.get(), deadline.minusNanos(hedgeAfter), true)
+                        .doFinally(signal -> permit.release());
+            }));
+            // An unfinished attempt only counts once neither of them finished
+            AtomicReference<Attempt> unfinished = new AtomicReference<>();
+            answer = Mono.firstWithValue(finishedOnly(answer, unfinished), finishedOnly(hedge, unfinished))
+                    .onErrorResume(e -> unfinished.get() != null, e -> Mono.just(unfinished.get()))
+                    .onErrorMap(LlmStreamingClient::attemptError);
+        }
+
+        Attempt winner = answer.block();
+        if (hedged.get()) {
+            metrics.recordLlmHedge(winner.hedge());
+        }
+        return winner;
+    }
+
+    private static Mono<Attempt> finishedOnly(Mono<Attempt> attempt, AtomicReference<Attempt> unfinished) {
+        return attempt.filter(a -> {
+            if (!a.completion().finished()) {
+                unfinished.compareAndSet(null, a);
+            }
+            return a.completion().finished();
+        });
+    }
+
+    private Mono<Attempt> attempt(String prompt, Supplier<Flux<ChatResponse>> request,
+                                  Predicate<CharSequence> answerComplete, Duration limit, boolean hedge) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            Answer answer = new Answer(started);
+            // The prompt picks the node with its prefix cached; a hedge goes wherever is least busy instead
+            Flux<ChatResponse> chunks = hedge ? request.get()
+                    : request.get().contextWrite(Context.of(OllamaBackendPool.AFFINITY_KEY, prompt));
+            return chunks
+                    .timeout(Mono.never(), chunk -> Mono.delay(tokenTimeout))
+                    // Only reached when the model finished on its own, not when it was cancelled below
+                    .doOnComplete(() -> answer.done = true)
+                    .takeUntilOther(Mono.delay(limit))
+                    .doOnNext(answer::append)
+                    .takeUntil(chunk -> {
+                        answer.stopped = answerComplete.test(answer.text);
+                        return answer.stopped;
+                    })
+                    .then(Mono.fromCallable(() -> finish(prompt, answer, started, hedge)))
+                    .onErrorResume(TimeoutException.class,
+                            e -> Mono.fromCallable(() -> finish(prompt, answer, started, hedge)))
+                    .doOnError(e -> metrics.recordLlmFailure());
+        });
+    }
+
+    private Attempt finish(String prompt, Answer answer, long startedNanos, boolean hedge) {
+        String text = answer.text.toString();
+        boolean finished = answer.done || answer.stopped;
+        if (finished) {
+            latencies.record(System.nanoTime() - startedNanos);
+            metrics.recordLlmCall(prompt, text,
+                    answer.usage != null ? answer.usage.getPromptTokens() : null,
+                    answer.usage != null ? answer.usage.getGenerationTokens() : null,
+                    answer.stopped);
+        } else {
+            metrics.recordLlmTimeout();
+        }
+        return new Attempt(new Completion(text, finished, answer.stopped), answer.firstTokenNanos, hedge);
+    }
+
+    // Mono.firstWithValue reports the errors of the attempts as suppressed exceptions when none of them answered
+    private static Throwable attemptError(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t.getSuppressed().length > 0) {
+                return t.getSuppressed()[0];
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Streams a free-form answer under the same deadline and token timeout, in the interactive lane. Calls with
+     * the same {@code key} in flight at the same time share one answer. These calls are not hedged.
+     *
+     * @throws LlmTimeoutException if no permit is free in time, or the answer is not complete in time
+     */
+    public String stream(String key, Supplier<Flux<String>> tokens) {
+        return gateway.coalesce(key, () -> {
+            LlmGateway.Permit permit = acquireInteractive();
+            long started = System.nanoTime();
+            AtomicLong firstTokenNanos = new AtomicLong(-1);
+            try {
+                String answer = tokens.get()
+                        .contextWrite(Context.of(OllamaBackendPool.AFFINITY_KEY, key))
+                        .timeout(Mono.never(), token -> Mono.delay(tokenTimeout))
+                        .doOnNext(token -> firstTokenNanos.compareAndSet(-1, System.nanoTime() - started))
+                        .collect(Collectors.joining())
+                        .timeout(deadline)
+                        .onErrorMap(TimeoutException.class, e -> timedOut())
+                        .block();
+                permit.answered(firstTokenNanos.get());
+                return answer;
+            } catch (RuntimeException e) {
+                permit.dropped();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Runs a blocking call under the deadline, for prompts that cannot stream, like those with function calls.
+     * The caller gets its timeout at the deadline, but the abandoned request still runs to completion and keeps
+     * its permit until then. Without a first token these calls cannot tell the gateway how loaded the model is,
+     * only that it was overloaded when they run past the deadline.
+     *
+     * @throws LlmTimeoutException if no permit is free in time, or the call does not return in time
+     */
+    public String call(String key, Callable<String> call) {
+        return gateway.coalesce(key, () -> {
+            LlmGateway.Permit permit = acquireInteractive();
+            // Whoever sets this first owns the permit: the call once it runs, or the timeout if it never did
+            AtomicBoolean started = new AtomicBoolean();
+            return Mono.fromCallable(() -> {
+                        if (!started.compareAndSet(false, true)) {
+                            return null;
+                        }
+                        long startedNanos = System.nanoTime();
+                        try {
+                            return call.call();
+                        } finally {
+                            if (System.nanoTime() - startedNanos > deadline.toNanos()) {
+                                permit.dropped();
+                            } else {
+                                permit.release();
+                            }
+                        }
+                    })
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .timeout(deadline)
+                    .doOnError(e -> {
+                        if (started.compareAndSet(false, true)) {
+                            permit.dropped();
+                        }
+                    })
+                    .onErrorMap(TimeoutException.class, e -> timedOut())
+                    .block();
+        });
+    }
+
+    private LlmGateway.Permit acquireInteractive() {
+        LlmGateway.Permit permit = gateway.acquire(LlmPriority.INTERACTIVE);
+        if (permit == null) {
+            metrics.recordLlmTimeout();
+            throw new LlmTimeoutException("No model slot became free in time");
+        }
+        return permit;
+    }
+
+    private LlmTimeoutException timedOut() {
+        metrics.recordLlmTimeout();
+        return new LlmTimeoutException("The model did not answer within " + deadline);
+    }
+
+    // Written by one attempt's signals only, which Reactor delivers one at a time
+    private static final class Answer {
+        private final long startedNanos;
+        private final StringBuilder text = new StringBuilder();
+        private long firstTokenNanos = -1;
+        private Usage usage;
+        private boolean done;
+        private boolean stopped;
+
+        Answer(long startedNanos) {
+            this.startedNanos = startedNanos;
+        }
+
+        void append(ChatResponse chunk) {
+            if (chunk.getResult() != null && chunk.getResult().getOutput().getContent() != null) {
+                if (firstTokenNanos < 0) {
+                    firstTokenNanos = System.nanoTime() - startedNanos;
+                }
+                text.append(chunk.getResult().getOutput().getContent());
+            }
+            if (chunk.getMetadata() != null && chunk.getMetadata().getUsage() != null) {
+                usage = chunk.getMetadata().getUsage();
+            }
+        }
+    }
+}
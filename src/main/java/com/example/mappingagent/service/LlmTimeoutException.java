@@ -0,0 +1,15 @@
+package com.example.mappingagent.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The model did not answer within the deadline of the call, or no permit for the call became free in time.
+ */
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class LlmTimeoutException extends RuntimeException {
+
+    public LlmTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JobStatus;
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingConfiguration;
+import com.example.mappingagent.model.MappingJob;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link EnhancedMappingService#generateMapping} as background jobs on a fixed pool of workers with a bounded
+ * queue. A job's id is derived from the schema pair, so submitting the same pair again returns the job that is
+ * already queued, running or finished instead of starting the work a second time. Failed jobs run again when
+ * resubmitted, and so do finished ones whose result may come out differently now: generated before accepted
+ * mappings changed how schemas are matched, or with semantic lookups that gave up.
+ */
+@Service
+public class MappingJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingJobService.class);
+    static final String QUEUE_FULL = "Rejected because the job queue was full";
+
+    private final EnhancedMappingService mappingService;
+    private final MappingJobStore jobStore;
+    private final ThreadPoolExecutor workers;
+    private final Object submitLock = new Object();
+
+    public MappingJobService(EnhancedMappingService mappingService,
+                             MappingJobStore jobStore,
+                             @Value("${mapping.jobs.workers:4}") int workerCount,
+                             @Value("${mapping.jobs.queue-capacity:100}") int queueCapacity) {
+        this.mappingService = mappingService;
+        this.jobStore = jobStore;
+
+        AtomicInteger counter = new AtomicInteger();
+        // AbortPolicy: a full queue surfaces as RejectedExecutionException instead of blocking the caller
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "mapping-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Returns the job for this schema pair, queueing a new one unless one exists that is still current.
+     *
+     * @throws RejectedExecutionException if the queue is full; the job is then recorded as failed
+     */
+    public MappingJob submit(String sourceJson, String targetJson) {
+        String id = jobId(sourceJson, targetJson);
+        synchronized (submitLock) {
+            MappingJob existing = jobStore.get(id);
+            if (existing != null && isCurrent(existing)) {
+                return existing;
+            }
+
+            MappingJob queued = new MappingJob();
+            queued.setId(id);
+            queued.setStatus(JobStatus.QUEUED);
+            queued.setSubmittedAt(Instant.now());
+            jobStore.save(queued);
+
+            try {
+                workers.execute(() -> run(queued, sourceJson, targetJson));
+            } catch (RejectedExecutionException e) {
+                jobStore.save(finished(queued, queued.getSubmittedAt(), null, QUEUE_FULL));
+                throw e;
+            }
+            return queued;
+        }
+    }
+
+    public MappingJob getJob(String id) {
+        return jobStore.get(id);
+    }
+
+    // Queued and running jobs are always current, they will see the latest synonyms when they get to matching
+    private boolean isCurrent(MappingJob job) {
+        return switch (job.getStatus()) {
+            case QUEUED, RUNNING -> true;
+            case SUCCEEDED -> job.isComplete() && job.getMatchingVersion() == mappingService.matchingVersion();
+            case FAILED -> false;
+        };
+    }
+
+    private void run(MappingJob queued, String sourceJson, String targetJson) {
+        Instant startedAt = Instant.now();
+        MappingJob running = new MappingJob();
+        running.setId(queued.getId());
+        running.setStatus(JobStatus.RUNNING);
+        running.setSubmittedAt(queued.getSubmittedAt());
+        running.setStartedAt(startedAt);
+        jobStore.save(running);
+
+        try {
+            // Read first: synonyms learned while the mapping runs may or may not have been used
+            long matchingVersion = mappingService.matchingVersion();
+            JsonNode sourceSchema = mappingService.parseJsonSchema(sourceJson);
+            JsonNode targetSchema = mappingService.parseJsonSchema(targetJson);
+            EnhancedMappingService.CheckedMapping mapping =
+                    mappingService.generateCheckedMapping(sourceSchema, targetSchema);
+            MappingJob succeeded = finished(queued, startedAt, mapping.configuration(), null);
+            succeeded.setMatchingVersion(matchingVersion);
+            succeeded.setComplete(mapping.complete());
+            jobStore.save(succeeded);
+        } catch (Exception e) {
+            log.warn("Mapping job {} failed", queued.getId(), e);
+            jobStore.save(finished(queued, startedAt, null, String.valueOf(e.getMessage())));
+        }
+    }
+
+    private static MappingJob finished(MappingJob queued, Instant startedAt,
+                                       MappingConfiguration configuration, String error) {
+        MappingJob job = new MappingJob();
+        job.setId(queued.getId());
+        job.setStatus(error == null ? JobStatus.SUCCEEDED : JobStatus.FAILED);
+        job.setSubmittedAt(queued.getSubmittedAt());
+        job.setStartedAt(startedAt);
+        job.setFinishedAt(Instant.now());
+        job.setConfiguration(configuration);
+        job.setError(error);
+        return job;
+    }
+
+    static String jobId(String sourceJson, String targetJson) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Length prefixes keep ("ab", "c") and ("a", "bc") apart
+            byte[] source = String.valueOf(sourceJson).getBytes(StandardCharsets.UTF_8);
+            byte[] target = String.valueOf(targetJson).getBytes(StandardCharsets.UTF_8);
+            digest.update(lengthPrefix(source.length));
+            digest.update(source);
+            digest.update(lengthPrefix(target.length));
+            digest.update(target);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] lengthPrefix(int length) {
+        return new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length};
+    }
+
+    // Running jobs are interrupted; the store reports them as failed after the next start
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JobStatus;
+import com.example.mappingagent.model.MappingJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest state of every mapping job, backed by an append-only NDJSON log with one line per state change. On
+ * startup the log is replayed and rewritten with only the latest state of each job still within retention. Jobs
+ * that were queued or running when the process stopped are recorded as failed, so a resubmit starts them again.
+ * While running, finished jobs past retention are no longer returned and are dropped, from memory and from the
+ * log, every so often when a job is saved.
+ */
+@Component
+public class MappingJobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingJobStore.class);
+    static final String INTERRUPTED = "Interrupted by a restart before it finished";
+    private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+    private final ObjectMapper objectMapper;
+    private final Path logFile;
+    private final Duration retention;
+
+    private final Map<String, MappingJob> jobs = new ConcurrentHashMap<>();
+    private BufferedWriter writer;
+    private Instant nextEviction = Instant.MIN;
+
+    public MappingJobStore(ObjectMapper objectMapper,
+                           @Value("${mapping.jobs.store-file:}") String logFile,
+                           @Value("${mapping.jobs.retention:7d}") Duration retention) {
+        this.objectMapper = objectMapper;
+        this.logFile = logFile.isBlank() ? null : Path.of(logFile);
+        this.retention = retention;
+    }
+
+    public MappingJob get(String id) {
+        MappingJob job = jobs.get(id);
+        return job != null && isExpired(job, Instant.now().minus(retention)) ? null : job;
+    }
+
+    /**
+     * Records a new state for a job. Callers hand in a fresh object per state and never modify it afterwards, so
+     * readers always see a consistent job.
+     */
+    public synchronized void save(MappingJob job) {
+        evictExpired();
+        jobs.put(job.getId(), job);
+        if (logFile == null) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(logFile.toAbsolutePath().getParent());
+                writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(objectMapper.writeValueAsString(job));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to job log " + logFile, e);
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        if (logFile == null || !Files.exists(logFile)) {
+            return;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    MappingJob job = objectMapper.readValue(line, MappingJob.class);
+                    jobs.put(job.getId(), job);
+                } catch (IOException e) {
+                    // A crash mid-append can leave a torn last line
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read job log {}", logFile, e);
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> isExpired(job, cutoff));
+        jobs.replaceAll((id, job) -> job.getStatus().isFinished() ? job : interrupted(job));
+        compact();
+        log.info("Loaded {} mapping jobs from {} ({} unreadable lines skipped)", jobs.size(), logFile, skipped);
+    }
+
+    // Called with the lock held. Once something was dropped the log is rewritten, so it does not grow without bound
+    private void evictExpired() {
+        Instant now = Instant.now();
+        if (now.isBefore(nextEviction)) {
+            return;
+        }
+        nextEviction = now.plus(EVICTION_INTERVAL);
+        Instant cutoff = now.minus(retention);
+        if (jobs.values().removeIf(job -> isExpired(job, cutoff)) && logFile != null) {
+            closeWriter();
+            compact();
+        }
+    }
+
+    private static boolean isExpired(MappingJob job, Instant cutoff) {
+        return job.getStatus().isFinished() && job.getFinishedAt().isBefore(cutoff);
+    }
+
+    private static MappingJob interrupted(MappingJob job) {
+        MappingJob failed = new MappingJob();
+        failed.setId(job.getId());
+        failed.setStatus(JobStatus.FAILED);
+        failed.setSubmittedAt(job.getSubmittedAt());
+        failed.setStartedAt(job.getStartedAt());
+        failed.setFinishedAt(Instant.now());
+        failed.setError(INTERRUPTED);
+        return failed;
+    }
+
+    // Rewrites the log with one line per job
+    private void compact() {
+        try {
+            Path parent = logFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "mapping-jobs", ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (MappingJob job : jobs.values()) {
+                    out.write(objectMapper.writeValueAsString(job));
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not compact job log {}", logFile, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    // The next save opens the log again
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Could not close job log {}", logFile, e);
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * Observations and meters for the stages of a mapping request. Each stage is an observation named
+ * {@code mapping.stage} with a {@code stage} tag, which becomes a timer (with a histogram when
+ * {@code management.metrics.distribution.percentiles-histogram.mapping.stage} is set) and a tracing span nested
+ * under the span of the request. LLM requests are observed the same way as {@code mapping.llm.request}.
+ */
+@Component
+public class MappingMetrics {
+
+    public static final String PARSE = "parse";
+    public static final String EXACT = "exact";
+    public static final String SYNONYM = "synonym";
+    public static final String SEMANTIC = "semantic";
+    public static final String SIMILARITY = "similarity";
+    public static final String RULES = "rules";
+
+    private static final String STAGE_OBSERVATION = "mapping.stage";
+    private static final String LLM_OBSERVATION = "mapping.llm.request";
+
+    private final ObservationRegistry observationRegistry;
+
+    private final DistributionSummary schemaNodes;
+    private final Counter exactMatches;
+    private final Counter synonymMatches;
+    private final Counter semanticMatches;
+    private final Counter similarityMatches;
+    private final Counter llmSuccesses;
+    private final Counter llmStopped;
+    private final Counter llmTimeouts;
+    private final Counter llmFailures;
+    private final Counter hedgesWon;
+    private final Counter hedgesLost;
+    private final DistributionSummary promptSize;
+    private final DistributionSummary responseSize;
+    private final Counter promptTokens;
+    private final Counter generationTokens;
+
+    public MappingMetrics(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.schemaNodes = DistributionSummary.builder("mapping.schema.nodes")
+                .description("Nodes in each parsed schema").register(meterRegistry);
+        this.exactMatches = matchCounter(meterRegistry, EXACT);
+        this.synonymMatches = matchCounter(meterRegistry, SYNONYM);
+        this.semanticMatches = matchCounter(meterRegistry, SEMANTIC);
+        this.similarityMatches = matchCounter(meterRegistry, SIMILARITY);
+        this.llmSuccesses = Counter.builder("mapping.llm.calls").tag("outcome", "success")
+                .description("Completed LLM requests").register(meterRegistry);
+        this.llmStopped = Counter.builder("mapping.llm.calls").tag("outcome", "stopped")
+                .description("LLM requests cancelled once the answer was complete").register(meterRegistry);
+        this.llmTimeouts = Counter.builder("mapping.llm.calls").tag("outcome", "timeout")
+                .description("LLM requests cut off by their deadline or token timeout").register(meterRegistry);
+        this.llmFailures = Counter.builder("mapping.llm.calls").tag("outcome", "failure")
+                .description("LLM requests that failed").register(meterRegistry);
+        this.hedgesWon = Counter.builder("mapping.llm.hedges").tag("outcome", "won")
+                .description("Hedged LLM requests that answered first").register(meterRegistry);
+        this.hedgesLost = Counter.builder("mapping.llm.hedges").tag("outcome", "lost")
+                .description("Hedged LLM requests the first request beat").register(meterRegistry);
+        this.promptSize = DistributionSummary.builder("mapping.llm.prompt.size").baseUnit("chars")
+                .description("Length of the prompts sent to the LLM").register(meterRegistry);
+        this.responseSize = DistributionSummary.builder("mapping.llm.response.size").baseUnit("chars")
+                .description("Length of the LLM responses").register(meterRegistry);
+        this.promptTokens = Counter.builder("mapping.llm.tokens").tag("type", "prompt")
+                .description("Tokens reported by the model").register(meterRegistry);
+        this.generationTokens = Counter.builder("mapping.llm.tokens").tag("type", "generation")
+                .description("Tokens reported by the model").register(meterRegistry);
+    }
+
+    private static Counter matchCounter(MeterRegistry meterRegistry, String strategy) {
+        return Counter.builder("mapping.fields.matched").tag("strategy", strategy)
+                .description("Field pairs matched, by the strategy that found them").register(meterRegistry);
+    }
+
+    public void observe(String stage, Runnable work) {
+        stage(stage).observe(work);
+    }
+
+    public <T> T observe(String stage, Supplier<T> work) {
+        return stage(stage).observe(work);
+    }
+
+    public <T, E extends Throwable> T observeChecked(String stage, Observation.CheckedCallable<T, E> work) throws E {
+        return stage(stage).observeChecked(work);
+    }
+
+    private Observation stage(String stage) {
+        return Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+                .lowCardinalityKeyValue("stage", stage)
+                .contextualName("mapping " + stage);
+    }
+
+    <T> T observeLlmRequest(Supplier<T> request) {
+        return Observation.createNotStarted(LLM_OBSERVATION, observationRegistry)
+                .contextualName("llm request")
+                .observe(request);
+    }
+
+    void recordSchema(JsonNode root) {
+        // Iterative, so very deep schemas cannot overflow the stack here
+        long nodes = 0;
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            JsonNode node = pending.pop();
+            nodes++;
+            if (node.getChildren() != null) {
+                node.getChildren().forEach(pending::push);
+            }
+        }
+        schemaNodes.record(nodes);
+    }
+
+    void recordMatches(int exact, int synonym, int semantic, int similarity) {
+        exactMatches.increment(exact);
+        synonymMatches.increment(synonym);
+        semanticMatches.increment(semantic);
+        similarityMatches.increment(similarity);
+    }
+
+    // Token counts are null when the model does not report them
+    void recordLlmCall(String prompt, String response, Long promptTokenCount, Long generationTokenCount,
+                       boolean stoppedEarly) {
+        (stoppedEarly ? llmStopped : llmSuccesses).increment();
+        promptSize.record(prompt.length());
+        responseSize.record(response != null ? response.length() : 0);
+        if (promptTokenCount != null) {
+            promptTokens.increment(promptTokenCount);
+        }
+        if (generationTokenCount != null) {
+            generationTokens.increment(generationTokenCount);
+        }
+    }
+
+    void recordLlmTimeout() {
+        llmTimeouts.increment();
+    }
+
+    void recordLlmFailure() {
+        llmFailures.increment();
+    }
+
+    void recordLlmHedge(boolean won) {
+        (won ? hedgesWon : hedgesLost).increment();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.MappingRule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU cache of generated rules per pair of schema subtrees, keyed by their {@link SchemaFingerprint}s. Rule paths
+ * are stored relative to the pair, so an entry serves identical nested objects anywhere in any schema. An entry
+ * holds the pair's own leaf rules and refers to the entries of its matched child pairs by key, so every rule is
+ * stored once however deep it is; the entry for a pair of schema roots stands for the complete mapping. Bounded by
+ * an estimate of the retained heap.
+ */
+@Component
+public class MappingResultCache {
+
+    // Rough per-object costs on a 64-bit JVM with compressed oops
+    private static final long ENTRY_OVERHEAD = 96;
+    private static final long RULE_OVERHEAD = 48;
+    private static final long STRING_OVERHEAD = 48;
+    private static final long PART_OVERHEAD = 32;
+    private static final long KEY_OVERHEAD = 32;
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MappingResultCache(@Value("${mapping.result-cache.max-memory:64MB}") DataSize maxMemory) {
+        this.maxBytes = maxMemory.toBytes();
+    }
+
+    /**
+     * Returns the cached rules for a subtree pair with paths relative to it, or null if the pair or any child pair
+     * it refers to is not cached. The list must not be modified; callers copy the rules when rebasing them.
+     */
+    public List<MappingRule> get(Key key) {
+        lock.lock();
+        try {
+            List<MappingRule> rules = new ArrayList<>();
+            if (!collect(key, "", "", rules)) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return rules;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Whether get would find the rules of the pair
+    public boolean contains(Key key) {
+        lock.lock();
+        try {
+            return collect(key, "", "", null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Adds the rules of a pair under the given prefixes, each rule built once with its full relative path
+    private boolean collect(Key key, String sourcePrefix, String targetPrefix, List<MappingRule> rules) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        for (Part part : entry.parts()) {
+            if (part.child() != null) {
+                String sourceChild = sourcePrefix + part.sourceName() + ".";
+                String targetChild = targetPrefix + part.targetName() + ".";
+                if (!collect(part.child(), sourceChild, targetChild, rules)) {
+                    return false;
+                }
+            } else if (rules != null) {
+                rules.add(prefixed(part.rule(), sourcePrefix, targetPrefix));
+            }
+        }
+        return true;
+    }
+
+    private static MappingRule prefixed(MappingRule rule, String sourcePrefix, String targetPrefix) {
+        if (sourcePrefix.isEmpty()) {
+            return rule;
+        }
+        MappingRule prefixed = new MappingRule();
+        prefixed.setSourcePath(sourcePrefix + rule.getSourcePath());
+        prefixed.setTargetPath(targetPrefix + rule.getTargetPath());
+        prefixed.setTransformation(rule.getTransformation());
+        prefixed.setConfidenceScore(rule.getConfidenceScore());
+        return prefixed;
+    }
+
+    // An entry of rules with paths relative to the pair and no child pairs
+    public void put(Key key, List<MappingRule> rules) {
+        putParts(key, rules.stream().map(Part::of).toList());
+    }
+
+    /**
+     * Caches a pair as its parts in generation order. Child pairs are only referred to, so the entry is of use
+     * while their own entries are cached too.
+     */
+    public void putParts(Key key, List<Part> parts) {
+        if (maxBytes <= 0) {
+            return;
+        }
+        Entry entry = new Entry(List.copyOf(parts), estimateSize(parts));
+        if (entry.bytes() > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                usedBytes -= previous.bytes();
+            }
+            usedBytes += entry.bytes();
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            usedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), usedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            usedBytes -= it.next().getValue().bytes();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    // Estimated bytes of an entry, with a slot in the list and a Part for every part
+    private static long estimateSize(List<Part> parts) {
+        long bytes = ENTRY_OVERHEAD;
+        for (Part part : parts) {
+            bytes += 8 + PART_OVERHEAD;
+            if (part.rule() != null) {
+                bytes += RULE_OVERHEAD + stringSize(part.rule().getSourcePath())
+                        + stringSize(part.rule().getTargetPath());
+            } else {
+                bytes += KEY_OVERHEAD + stringSize(part.sourceName()) + stringSize(part.targetName());
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringSize(String value) {
+        // Transformation strings are shared literals and not counted
+        return value == null ? 0 : STRING_OVERHEAD + 2L * value.length();
+    }
+
+    public record Key(long source, long target) {}
+
+    /**
+     * One step of an entry in generation order: a rule relative to the pair, or a matched child pair by its field
+     * names and key, whose rules are in an entry of its own.
+     */
+    public record Part(MappingRule rule, String sourceName, String targetName, Key child) {
+
+        public static Part of(MappingRule rule) {
+            return new Part(rule, null, null, null);
+        }
+
+        public static Part child(String sourceName, String targetName, Key child) {
+            return new Part(null, sourceName, targetName, child);
+        }
+    }
+
+    private record Entry(List<Part> parts, long bytes) {}
+
+    public record Stats(long hits, long misses, long evictions, int size, long usedBytes) {}
+}
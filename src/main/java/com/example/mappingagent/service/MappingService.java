@@ -1,7 +1,6 @@
 package com.example.mappingagent.service;
 
 import com.example.mappingagent.model.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.mappingagent.model.MappingConfiguration;
 import com.example.mappingagent.model.MappingRule;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,16 +18,20 @@ public class MappingService {
     private SimilarityService similarityService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private SchemaParser schemaParser;
+
+    @Autowired
+    private MappingMetrics metrics;
 
     public MappingConfiguration generateMapping(JsonNode sourceSchema, JsonNode targetSchema) {
         List<MappingRule> rules = new ArrayList<>();
-        
-        // First pass: exact name matches
-        generateMatchingRules(sourceSchema, targetSchema, rules, "");
-        
-        // Second pass: similar name matches
-        generateSimilarityBasedRules(sourceSchema, targetSchema, rules, "");
+        metrics.observe(MappingMetrics.RULES, () -> {
+            // First pass: exact name matches
+            generateMatchingRules(sourceSchema, targetSchema, rules, "");
+
+            // Second pass: similar name matches
+            new SimilarityRuleEngine(similarityService, rules).generateRules(sourceSchema, targetSchema, "");
+        });
         
         // Calculate overall confidence
         double overallConfidence = rules.stream()
@@ -76,65 +79,7 @@ public class MappingService {
         }
     }
 
-    private void generateSimilarityBasedRules(JsonNode source, JsonNode target, List<MappingRule> rules, String currentPath) {
-        String sourcePath = currentPath.isEmpty() ? source.getName() : currentPath + "." + source.getName();
-        String targetPath = currentPath.isEmpty() ? target.getName() : currentPath + "." + target.getName();
-        
-        double nameSimilarity = similarityService.calculateNameSimilarity(source.getName(), target.getName());
-        double structureSimilarity = similarityService.calculateStructureSimilarity(source, target);
-        double combinedScore = (nameSimilarity + structureSimilarity) / 2;
-        
-        if (combinedScore > 0.4 && !rules.stream().anyMatch(r -> r.getTargetPath().equals(targetPath))) {
-            MappingRule rule = new MappingRule();
-            rule.setSourcePath(sourcePath);
-            rule.setTargetPath(targetPath);
-            rule.setTransformation("direct");
-            rule.setConfidenceScore(combinedScore);
-            rules.add(rule);
-        }
-        
-        // Recursively process children
-        if (source.getChildren() != null && target.getChildren() != null) {
-            for (JsonNode sourceChild : source.getChildren()) {
-                for (JsonNode targetChild : target.getChildren()) {
-                    generateSimilarityBasedRules(sourceChild, targetChild, rules, sourcePath);
-                }
-            }
-        }
-    }
-
     public JsonNode parseJsonSchema(String json) throws Exception {
-        com.fasterxml.jackson.databind.JsonNode rootNode = objectMapper.readTree(json);
-        return convertJsonNode(rootNode, "");
-    }
-
-    private JsonNode convertJsonNode(com.fasterxml.jackson.databind.JsonNode node, String name) {
-        JsonNode result = new JsonNode();
-        result.setName(name);
-        
-        if (node.isObject()) {
-            result.setType("object");
-            List<JsonNode> children = new ArrayList<>();
-            node.fields().forEachRemaining(entry -> {
-                children.add(convertJsonNode(entry.getValue(), entry.getKey()));
-            });
-            result.setChildren(children);
-        } else if (node.isArray()) {
-            result.setType("array");
-            if (!node.isEmpty()) {
-                // For arrays, we'll just look at the first element to determine structure
-                result.setChildren(List.of(convertJsonNode(node.get(0), "item")));
-            }
-        } else if (node.isTextual()) {
-            result.setType("string");
-        } else if (node.isNumber()) {
-            result.setType("number");
-        } else if (node.isBoolean()) {
-            result.setType("boolean");
-        } else if (node.isNull()) {
-            result.setType("null");
-        }
-        
-        return result;
+        return schemaParser.parse(json);
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.mappingagent.service;
+
+/**
+ * Scores two field names that were already passed through {@link FieldNames#normalize}.
+ * Similarity is {@code 1 - distance / longerLength}, so identical names score 1.
+ */
+public interface NameSimilarityScorer {
+
+    double similarity(char[] normalized1, char[] normalized2);
+
+    /**
+     * Returns the exact similarity when it is at least {@code minSimilarity}, and 0 otherwise. Implementations
+     * may stop early once the result can no longer reach {@code minSimilarity}.
+     */
+    double similarity(char[] normalized1, char[] normalized2, double minSimilarity);
+
+    default double similarity(String normalized1, String normalized2) {
+        return similarity(normalized1.toCharArray(), normalized2.toCharArray());
+    }
+}
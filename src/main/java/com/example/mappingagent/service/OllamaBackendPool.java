@@ -0,0 +1,367 @@
+package com.example.mappingagent.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads Ollama requests over several nodes. A request with an affinity key (the prompt) goes to the node that key
+ * hashes to on a consistent-hash ring, so a repeated prompt finds its prefix still in that node's KV cache, unless
+ * that node already has more than its share of the outstanding requests; then the ring is walked on. Requests
+ * without a key go to the node with the lowest latency EWMA times outstanding requests. Nodes failing several
+ * requests in a row are ejected until a health check of {@code /api/tags} succeeds again.
+ */
+@Component
+public class OllamaBackendPool {
+
+    private static final Logger log = LoggerFactory.getLogger(OllamaBackendPool.class);
+
+    // Key of the affinity key in the Reactor context of a streamed request
+    public static final String AFFINITY_KEY = OllamaBackendPool.class.getName() + ".affinity";
+
+    private static final int VIRTUAL_NODES = 64;
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final List<Node> nodes;
+    private final double affinityLoadFactor;
+    private final int maxFailures;
+    private final Duration healthInterval;
+    private final Duration healthTimeout;
+
+    // Virtual nodes sorted by hash, so the owner of a key is found by binary search
+    private final long[] ringHashes;
+    private final Node[] ringNodes;
+
+    private final HttpClient healthClient;
+    private ScheduledExecutorService healthChecks;
+
+    public OllamaBackendPool(@Value("${mapping.ollama.pool.nodes:${spring.ai.ollama.base-url:http://localhost:11434}}") String nodes,
+                             @Value("${mapping.ollama.pool.affinity-load-factor:1.25}") double affinityLoadFactor,
+                             @Value("${mapping.ollama.pool.max-failures:3}") int maxFailures,
+                             @Value("${mapping.ollama.pool.health-interval:10s}") Duration healthInterval,
+                             @Value("${mapping.ollama.pool.health-timeout:2s}") Duration healthTimeout) {
+        this.nodes = Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> new Node(URI.create(url.endsWith("/") ? url.substring(0, url.length() - 1) : url)))
+                .toList();
+        if (this.nodes.isEmpty()) {
+            throw new IllegalArgumentException("mapping.ollama.pool.nodes names no Ollama node");
+        }
+        this.affinityLoadFactor = affinityLoadFactor;
+        this.maxFailures = maxFailures;
+        this.healthInterval = healthInterval;
+        this.healthTimeout = healthTimeout;
+        this.healthClient = HttpClient.newBuilder().connectTimeout(healthTimeout).build();
+
+        List<long[]> ring = new ArrayList<>();
+        for (int n = 0; n < this.nodes.size(); n++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.add(new long[]{hash(this.nodes.get(n).name() + "#" + v), n});
+            }
+        }
+        ring.sort((a, b) -> Long.compare(a[0], b[0]));
+        ringHashes = new long[ring.size()];
+        ringNodes = new Node[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            ringHashes[i] = ring.get(i)[0];
+            ringNodes[i] = this.nodes.get((int) ring.get(i)[1]);
+        }
+    }
+
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    // The URL clients are built with; every request is rewritten to the node it is routed to
+    public String baseUrl() {
+        return nodes.get(0).name();
+    }
+
+    /**
+     * Picks the node for a request, never one of {@code excluded}.
+     *
+     * @return the node, or null if every node is excluded
+     */
+    Node select(String affinityKey, Collection<Node> excluded) {
+        List<Node> candidates = nodes.stream().filter(node -> node.healthy && !excluded.contains(node)).toList();
+        if (candidates.isEmpty()) {
+            // With every node ejected, trying one beats failing the request outright
+            candidates = nodes.stream().filter(node -> !excluded.contains(node)).toList();
+            if (candidates.isEmpty()) {
+                return null;
+            }
+        }
+
+        if (affinityKey != null && candidates.size() > 1) {
+            int outstanding = 0;
+            for (Node node : candidates) {
+                outstanding += node.outstanding.get();
+            }
+            // Consistent hashing with bounded loads: no node takes more than its share times the load factor
+            int bound = (int) Math.ceil(affinityLoadFactor * (outstanding + 1) / candidates.size());
+            int start = Arrays.binarySearch(ringHashes, hash(affinityKey));
+            start = start >= 0 ? start : -start - 1;
+            for (int i = 0; i < ringNodes.length; i++) {
+                Node node = ringNodes[(start + i) % ringNodes.length];
+                if (node.outstanding.get() < bound && candidates.contains(node)) {
+                    return node;
+                }
+            }
+        }
+
+        // Nodes without a sample yet are assumed as fast as the average of the others
+        double measured = 0;
+        int samples = 0;
+        for (Node node : candidates) {
+            if (node.ewmaNanos > 0) {
+                measured += node.ewmaNanos;
+                samples++;
+            }
+        }
+        double unmeasured = samples > 0 ? measured / samples : 1;
+        Node best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Node node : candidates) {
+            double cost = (node.ewmaNanos > 0 ? node.ewmaNanos : unmeasured) * (node.outstanding.get() + 1);
+            if (cost < bestCost) {
+                best = node;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * RestClient interceptor: routes a blocking request by the hash of its body. A node refusing the connection
+     * is skipped for the next one. Must be the last interceptor, since a retry executes the request again.
+     */
+    public ClientHttpResponse route(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String affinityKey = body.length > 0 ? new String(body, StandardCharsets.ISO_8859_1) : null;
+        List<Node> tried = new ArrayList<>();
+        while (true) {
+            Node node = select(affinityKey, tried);
+            Call call = node.begin();
+            long started = System.nanoTime();
+            try {
+                ClientHttpResponse response = execution.execute(new HttpRequestWrapper(request) {
+                    @Override
+                    public URI getURI() {
+                        return node.resolve(request.getURI());
+                    }
+                }, body);
+                node.record(response.getStatusCode().is5xxServerError() ? -1 : System.nanoTime() - started);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                node.record(-1);
+                tried.add(node);
+                if (!refused(e) || tried.size() == nodes.size()) {
+                    throw e;
+                }
+            } finally {
+                // Non-streaming Ollama answers in one piece, so the node is done once the headers are in
+                call.end();
+            }
+        }
+    }
+
+    /**
+     * WebClient filter: routes a request by the {@link #AFFINITY_KEY} in its Reactor context, if any. The node
+     * counts the request as outstanding until its body is read or cancelled.
+     */
+    public Mono<ClientResponse> route(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context ->
+                exchange(request, next, context.getOrDefault(AFFINITY_KEY, null), new ArrayList<>()));
+    }
+
+    private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next, String affinityKey,
+                                          List<Node> tried) {
+        Node node = select(affinityKey, tried);
+        Call call = node.begin();
+        long started = System.nanoTime();
+        return next.exchange(ClientRequest.from(request).url(node.resolve(request.url())).build())
+                .map(response -> {
+                    node.record(response.statusCode().is5xxServerError() ? -1 : System.nanoTime() - started);
+                    return response.mutate().body(body -> body.doFinally(signal -> call.end())).build();
+                })
+                .doOnCancel(call::end)
+                .onErrorResume(e -> {
+                    call.end();
+                    node.record(-1);
+                    tried.add(node);
+                    if (!refused(e) || tried.size() == nodes.size()) {
+                        return Mono.error(e);
+                    }
+                    return exchange(request, next, affinityKey, tried);
+                });
+    }
+
+    // Only a refused connection is safe to retry elsewhere; anything later may have reached the model
+    private static boolean refused(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PostConstruct
+    void start() {
+        healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecks.scheduleWithFixedDelay(this::checkHealth, healthInterval.toMillis(), healthInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        healthChecks.shutdownNow();
+    }
+
+    void checkHealth() {
+        for (Node node : nodes) {
+            boolean up;
+            try {
+                HttpResponse<Void> response = healthClient.send(
+                        java.net.http.HttpRequest.newBuilder(URI.create(node.name() + "/api/tags"))
+                                .timeout(healthTimeout)
+                                .GET()
+                                .build(),
+                        HttpResponse.BodyHandlers.discarding());
+                up = response.statusCode() == 200;
+            } catch (IOException e) {
+                up = false;
+            } catch (RuntimeException e) {
+                // Thrown out of the scheduled task, it would cancel every later health check
+                log.warn("Health check of Ollama node {} failed", node.name(), e);
+                up = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (up) {
+                node.failures.set(0);
+                if (!node.healthy) {
+                    node.healthy = true;
+                    log.info("Ollama node {} passed its health check and is back in the pool", node.name());
+                }
+            } else {
+                node.record(-1);
+            }
+        }
+    }
+
+    // 64-bit FNV-1a with a final mix, so similar prompts still land far apart on the ring
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public final class Node {
+        private final URI uri;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private volatile boolean healthy = true;
+
+        private Node(URI uri) {
+            this.uri = uri;
+        }
+
+        public String name() {
+            return uri.toString();
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        public boolean healthy() {
+            return healthy;
+        }
+
+        public double latencyMillis() {
+            return ewmaNanos / 1_000_000;
+        }
+
+        // Same path and query on this node
+        URI resolve(URI requestUri) {
+            String query = requestUri.getRawQuery();
+            return URI.create(name() + requestUri.getRawPath() + (query != null ? "?" + query : ""));
+        }
+
+        Call begin() {
+            outstanding.incrementAndGet();
+            return new Call(this);
+        }
+
+        // The latency until the response started, or -1 for a failed request
+        synchronized void record(long latencyNanos) {
+            if (latencyNanos >= 0) {
+                failures.set(0);
+                ewmaNanos = ewmaNanos == 0 ? latencyNanos : ewmaNanos + (latencyNanos - ewmaNanos) * EWMA_WEIGHT;
+            } else if (failures.incrementAndGet() >= maxFailures && healthy) {
+                healthy = false;
+                log.warn("Ejected Ollama node {} after {} failures in a row", name(), maxFailures);
+            }
+        }
+    }
+
+    // One request on a node, outstanding until ended; ending it again does nothing
+    static final class Call {
+        private final Node node;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private Call(Node node) {
+            this.node = node;
+        }
+
+        void end() {
+            if (ended.compareAndSet(false, true)) {
+                node.outstanding.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canonical 64-bit structural hash of schema subtrees. A node hashes its type and the sorted (name, hash) pairs of
+ * its children, so key order and formatting of the sample document do not matter. The node's own name is left
+ * out, which lets {@code billing} and {@code shipping} objects with the same fields share a fingerprint.
+ * <p>
+ * Each instance memoizes the hash of every node it has seen and is meant for one mapping run; not thread-safe.
+ */
+final class SchemaFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<JsonNode, Long> fingerprints = new IdentityHashMap<>();
+
+    MappingResultCache.Key key(JsonNode source, JsonNode target) {
+        return new MappingResultCache.Key(of(source), of(target));
+    }
+
+    long of(JsonNode node) {
+        Long cached = fingerprints.get(node);
+        if (cached != null) {
+            return cached;
+        }
+
+        long hash = mix(hash(node.getType()));
+        List<JsonNode> children = node.getChildren();
+        if (children != null) {
+            // Incremental: children contribute their own memoized fingerprints, sorted to ignore field order
+            long[] entries = new long[children.size()];
+            for (int i = 0; i < entries.length; i++) {
+                JsonNode child = children.get(i);
+                entries[i] = mix(hash(child.getName()) * 31 + of(child));
+            }
+            Arrays.sort(entries);
+            hash = mix(hash ^ (entries.length + 1));
+            for (long entry : entries) {
+                hash = mix(hash ^ entry) * FNV_PRIME;
+            }
+        }
+
+        fingerprints.put(node, hash);
+        return hash;
+    }
+
+    private static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.mappingagent.service;
+
+// One source/target sample document pair of a bulk mapping request
+public record SchemaPair(String sourceJson, String targetJson) {
+}
@@ -0,0 +1,181 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Builds the schema tree straight from Jackson tokens, without materializing a Jackson DOM of the sample
+ * document. With {@link ArrayInference#FIRST} array elements after the first are skipped token by token; with
+ * {@link ArrayInference#UNION} they are merged into one shape, optionally from a fixed-size reservoir sample.
+ */
+@Component
+public class SchemaParser {
+
+    public static final String ARRAY_ITEM_NAME = "item";
+
+    // Fixed so the same document always yields the same sampled schema
+    private static final long SAMPLE_SEED = 0x5EED_CAFEL;
+
+    private final JsonFactory jsonFactory;
+    private final ArrayInference arrayInference;
+    private final int arraySampleSize;
+    private final MappingMetrics metrics;
+
+    public SchemaParser(ObjectMapper objectMapper,
+                        @Value("${mapping.schema.array-inference:first}") ArrayInference arrayInference,
+                        @Value("${mapping.schema.array-sample-size:0}") int arraySampleSize,
+                        MappingMetrics metrics) {
+        // Field names come out of the factory's symbol table, so repeated names share one interned String
+        this.jsonFactory = objectMapper.getFactory();
+        this.arrayInference = arrayInference;
+        this.arraySampleSize = arraySampleSize;
+        this.metrics = metrics;
+    }
+
+    public JsonNode parse(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return parse(parser);
+        }
+    }
+
+    public JsonNode parse(InputStream json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return parse(parser);
+        }
+    }
+
+    public JsonNode parse(JsonParser parser) throws IOException {
+        return metrics.observeChecked(MappingMetrics.PARSE, () -> {
+            if (parser.nextToken() == null) {
+                throw new JsonParseException(parser, "No JSON content to parse");
+            }
+            JsonNode root = readNode(parser, "");
+            metrics.recordSchema(root);
+            return root;
+        });
+    }
+
+    // Expects the parser on the first token of the value and leaves it on the value's last token
+    private JsonNode readNode(JsonParser parser, String name) throws IOException {
+        JsonNode result = new JsonNode();
+        result.setName(name);
+
+        switch (parser.currentToken()) {
+            case START_OBJECT -> {
+                result.setType("object");
+                List<JsonNode> children = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.currentName();
+                    parser.nextToken();
+                    children.add(readNode(parser, fieldName));
+                }
+                result.setChildren(children);
+            }
+            case START_ARRAY -> {
+                if (arrayInference == ArrayInference.UNION) {
+                    return readArrayUnion(parser, name);
+                }
+                result.setType("array");
+                if (parser.nextToken() != JsonToken.END_ARRAY) {
+                    // For arrays, we'll just look at the first element to determine structure
+                    result.setChildren(List.of(readNode(parser, ARRAY_ITEM_NAME)));
+                    skipRemainingElements(parser);
+                }
+            }
+            // Embedded objects cannot appear in textual JSON; their type stays unset like the DOM conversion did
+            default -> result.setType(typeOf(parser.currentToken()));
+        }
+
+        return result;
+    }
+
+    private JsonNode readArrayUnion(JsonParser parser, String name) throws IOException {
+        SchemaShape union = new SchemaShape();
+        long elements = 0;
+        long sampled;
+
+        if (arraySampleSize <= 0) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                requireToken(parser, token);
+                union.observe(parser);
+                elements++;
+            }
+            sampled = elements;
+        } else {
+            // Reservoir sampling: every element has the same chance of being kept, and elements that lose the
+            // draw are skipped before they are ever parsed
+            SchemaShape[] reservoir = new SchemaShape[arraySampleSize];
+            SplittableRandom random = new SplittableRandom(SAMPLE_SEED);
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                requireToken(parser, token);
+                long slot = elements < arraySampleSize ? elements : random.nextLong(elements + 1);
+                if (slot < arraySampleSize) {
+                    SchemaShape sample = new SchemaShape();
+                    sample.observe(parser);
+                    reservoir[(int) slot] = sample;
+                } else {
+                    parser.skipChildren();
+                }
+                elements++;
+            }
+            sampled = Math.min(elements, arraySampleSize);
+            for (int i = 0; i < sampled; i++) {
+                union.merge(reservoir[i]);
+            }
+        }
+
+        JsonNode result = new JsonNode();
+        result.setName(name);
+        result.setType("array");
+        if (!union.isEmpty()) {
+            result.setChildren(List.of(union.toJsonNode(ARRAY_ITEM_NAME, 0)));
+        }
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("elements", String.valueOf(elements));
+        metadata.put("sampled", String.valueOf(sampled));
+        result.setMetadata(metadata);
+        return result;
+    }
+
+    static String typeOf(JsonToken token) {
+        return switch (token) {
+            case START_OBJECT -> "object";
+            case START_ARRAY -> "array";
+            case VALUE_STRING -> "string";
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> "number";
+            case VALUE_TRUE, VALUE_FALSE -> "boolean";
+            case VALUE_NULL -> "null";
+            default -> null;
+        };
+    }
+
+    private static void requireToken(JsonParser parser, JsonToken token) throws IOException {
+        if (token == null) {
+            throw new JsonParseException(parser, "Unexpected end of input inside array");
+        }
+    }
+
+    private static void skipRemainingElements(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            requireToken(parser, token);
+            parser.skipChildren();
+        }
+    }
+}
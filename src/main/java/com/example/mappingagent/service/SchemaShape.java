@@ -0,0 +1,128 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Union of every value observed at one position of a document: how often each type occurred, the fields seen
+ * in object values and the merged shape of array elements. Its size depends on the distinct fields, not on how
+ * many values were observed.
+ */
+final class SchemaShape {
+
+    private long observations;
+    private final Map<String, Long> typeCounts = new LinkedHashMap<>(4);
+    private Map<String, SchemaShape> fields;
+    private SchemaShape item;
+    private long elements;
+
+    // Expects the parser on the first token of a value and leaves it on the value's last token
+    void observe(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        String type = SchemaParser.typeOf(token);
+        if (type == null) {
+            return;
+        }
+        observations++;
+        typeCounts.merge(type, 1L, Long::sum);
+
+        if (token == JsonToken.START_OBJECT) {
+            if (fields == null) {
+                fields = new LinkedHashMap<>();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                fields.computeIfAbsent(fieldName, k -> new SchemaShape()).observe(parser);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                elements++;
+                if (item == null) {
+                    item = new SchemaShape();
+                }
+                item.observe(parser);
+            }
+        }
+    }
+
+    void merge(SchemaShape other) {
+        observations += other.observations;
+        elements += other.elements;
+        other.typeCounts.forEach((type, count) -> typeCounts.merge(type, count, Long::sum));
+        if (other.fields != null) {
+            if (fields == null) {
+                fields = new LinkedHashMap<>();
+            }
+            other.fields.forEach((name, shape) -> fields.computeIfAbsent(name, k -> new SchemaShape()).merge(shape));
+        }
+        if (other.item != null) {
+            if (item == null) {
+                item = new SchemaShape();
+            }
+            item.merge(other.item);
+        }
+    }
+
+    boolean isEmpty() {
+        return observations == 0;
+    }
+
+    /**
+     * Converts the union to a schema node. The node takes the most frequent non-null type; {@code presence} is the
+     * share of the parent's object values that contained this field, {@code types} lists competing types and
+     * {@code nullable} marks fields that were sometimes null.
+     */
+    JsonNode toJsonNode(String name, long parentObjects) {
+        JsonNode result = new JsonNode();
+        result.setName(name);
+        Map<String, String> metadata = new LinkedHashMap<>();
+
+        if (parentObjects > 0) {
+            metadata.put("presence", ratio(observations, parentObjects));
+        }
+
+        List<String> nonNullTypes = new ArrayList<>(typeCounts.keySet());
+        nonNullTypes.remove("null");
+        nonNullTypes.sort((a, b) -> Long.compare(typeCounts.get(b), typeCounts.get(a)));
+        if (nonNullTypes.isEmpty()) {
+            result.setType(typeCounts.isEmpty() ? null : "null");
+        } else {
+            result.setType(nonNullTypes.get(0));
+            if (typeCounts.containsKey("null")) {
+                metadata.put("nullable", "true");
+            }
+            if (nonNullTypes.size() > 1) {
+                metadata.put("types", String.join("|", nonNullTypes));
+            }
+        }
+
+        if ("object".equals(result.getType())) {
+            long objects = typeCounts.get("object");
+            List<JsonNode> children = new ArrayList<>();
+            if (fields != null) {
+                fields.forEach((fieldName, shape) -> children.add(shape.toJsonNode(fieldName, objects)));
+            }
+            result.setChildren(children);
+        } else if ("array".equals(result.getType())) {
+            metadata.put("elements", String.valueOf(elements));
+            if (item != null && !item.isEmpty()) {
+                result.setChildren(List.of(item.toJsonNode(SchemaParser.ARRAY_ITEM_NAME, 0)));
+            }
+        }
+
+        result.setMetadata(metadata.isEmpty() ? null : metadata);
+        return result;
+    }
+
+    private static String ratio(long count, long total) {
+        return String.valueOf(Math.round((double) count / total * 10000) / 10000.0);
+    }
+}
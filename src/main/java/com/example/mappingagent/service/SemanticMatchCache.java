@@ -0,0 +1,212 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of LLM semantic matches, keyed by the sorted source and target field-name sets.
+ */
+@Component
+public class SemanticMatchCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticMatchCache.class);
+    private static final char NAME_SEPARATOR = '\u001F';
+    private static final char SET_SEPARATOR = '\u001E';
+
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Path snapshotFile;
+
+    // Access-ordered so the eldest entry is always the least recently used one
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SemanticMatchCache(ObjectMapper objectMapper,
+                              @Value("${mapping.semantic-cache.max-size:10000}") int maxSize,
+                              @Value("${mapping.semantic-cache.ttl:24h}") Duration ttl,
+                              @Value("${mapping.semantic-cache.snapshot-file:}") String snapshotFile) {
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    }
+
+    public static String key(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+        return joinNames(sourceFields) + SET_SEPARATOR + joinNames(targetFields);
+    }
+
+    private static String joinNames(List<JsonNode> fields) {
+        StringBuilder sb = new StringBuilder();
+        fields.stream()
+                .map(JsonNode::getName)
+                .distinct()
+                .sorted()
+                .forEach(name -> {
+                    if (!sb.isEmpty()) sb.append(NAME_SEPARATOR);
+                    sb.append(name);
+                });
+        return sb.toString();
+    }
+
+    public Map<String, String> get(String key) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now, ttlMillis)) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.matches();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String key, Map<String, String> matches) {
+        Entry entry = new Entry(Map.copyOf(matches), System.currentTimeMillis());
+        lock.lock();
+        try {
+            entries.put(key, entry);
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, String> computeIfAbsent(String key, Supplier<Map<String, String>> loader) {
+        Map<String, String> cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // The LLM call runs outside the lock; concurrent misses on the same key may both load
+        Map<String, String> loaded = loader.get();
+        put(key, loaded);
+        return loaded;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    @PostConstruct
+    void loadSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return;
+        }
+        try {
+            List<SnapshotEntry> snapshot = objectMapper.readValue(snapshotFile.toFile(), new TypeReference<>() {});
+            long now = System.currentTimeMillis();
+            lock.lock();
+            try {
+                for (SnapshotEntry e : snapshot) {
+                    Entry entry = new Entry(Map.copyOf(e.matches()), e.createdAt());
+                    if (!entry.isExpired(now, ttlMillis)) {
+                        entries.put(e.key(), entry);
+                    }
+                }
+                evictOverflow();
+            } finally {
+                lock.unlock();
+            }
+            log.info("Loaded {} semantic matches from {}", entries.size(), snapshotFile);
+        } catch (IOException e) {
+            log.warn("Could not load semantic match snapshot from {}", snapshotFile, e);
+        }
+    }
+
+    @PreDestroy
+    public void writeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        List<SnapshotEntry> snapshot = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            entries.forEach((key, entry) -> {
+                if (!entry.isExpired(now, ttlMillis)) {
+                    snapshot.add(new SnapshotEntry(key, entry.matches(), entry.createdAt()));
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Path parent = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // Write to a temp file first so a crash never leaves a truncated snapshot behind
+            Path tmp = Files.createTempFile(parent, "semantic-cache", ".tmp");
+            objectMapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} semantic matches to {}", snapshot.size(), snapshotFile);
+        } catch (IOException e) {
+            log.warn("Could not write semantic match snapshot to {}", snapshotFile, e);
+        }
+    }
+
+    private record Entry(Map<String, String> matches, long createdAt) {
+        boolean isExpired(long now, long ttlMillis) {
+            return ttlMillis > 0 && now - createdAt > ttlMillis;
+        }
+    }
+
+    record SnapshotEntry(String key, Map<String, String> matches, long createdAt) {}
+
+    public record Stats(long hits, long misses, long evictions, int size) {}
+}
@@ -0,0 +1,9 @@
+package com.example.mappingagent.service;
+
+// What EnhancedSimilarityService asks for matches between the fields that have no exact match
+public enum SemanticMatching {
+    // The chat model suggests pairs in free text
+    LLM,
+    // Nearest neighbours by cosine similarity of name embeddings
+    EMBEDDING
+}
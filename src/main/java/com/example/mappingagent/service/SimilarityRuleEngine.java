@@ -0,0 +1,226 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingRule;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Similarity pass of {@link MappingService}. Produces the same rules as scoring every source/target pair at
+ * every level, but memoizes structure scores per node pair, tracks taken target paths in a hash set and skips
+ * pairs and whole subtrees whose upper-bound score cannot pass the threshold.
+ * <p>
+ * One engine is used for a single generateMapping call; the memo tables are not thread-safe.
+ */
+class SimilarityRuleEngine {
+
+    static final double THRESHOLD = 0.4;
+
+    private final SimilarityService similarityService;
+    private final List<MappingRule> rules;
+    private final Set<String> targetPaths = new HashSet<>();
+
+    private final Map<String, char[]> normalizedNames = new HashMap<>();
+    private final Map<JsonNode, Map<JsonNode, Double>> structureScores = new IdentityHashMap<>();
+    private final Map<JsonNode, Map<String, JsonNode>> childIndexes = new IdentityHashMap<>();
+    private final Map<JsonNode, DepthProfile> depthProfiles = new IdentityHashMap<>();
+
+    SimilarityRuleEngine(SimilarityService similarityService, List<MappingRule> rules) {
+        this.similarityService = similarityService;
+        this.rules = rules;
+        rules.forEach(rule -> targetPaths.add(rule.getTargetPath()));
+    }
+
+    void generateRules(JsonNode source, JsonNode target, String currentPath) {
+        String sourcePath = currentPath.isEmpty() ? source.getName() : currentPath + "." + source.getName();
+        String targetPath = currentPath.isEmpty() ? target.getName() : currentPath + "." + target.getName();
+
+        if (!targetPaths.contains(targetPath)) {
+            double score = scoreIfAboveThreshold(source, target);
+            if (score > THRESHOLD) {
+                MappingRule rule = new MappingRule();
+                rule.setSourcePath(sourcePath);
+                rule.setTargetPath(targetPath);
+                rule.setTransformation("direct");
+                rule.setConfidenceScore(score);
+                rules.add(rule);
+                targetPaths.add(targetPath);
+            }
+        }
+
+        // Recursively process children
+        if (source.getChildren() != null && target.getChildren() != null && canScoreInSubtrees(source, target)) {
+            for (JsonNode sourceChild : source.getChildren()) {
+                for (JsonNode targetChild : target.getChildren()) {
+                    generateRules(sourceChild, targetChild, sourcePath);
+                }
+            }
+        }
+    }
+
+    // Returns the combined score, or 0 when its upper bound already rules the pair out
+    private double scoreIfAboveThreshold(JsonNode source, JsonNode target) {
+        char[] name1 = normalize(source.getName());
+        char[] name2 = normalize(target.getName());
+        double structureSimilarity = structureSimilarity(source, target);
+
+        // Levenshtein distance is at least the length difference, so the name score is at most shorter / longer
+        if ((lengthRatio(name1.length, name2.length) + structureSimilarity) / 2 <= THRESHOLD) {
+            return 0.0;
+        }
+
+        // The scorer may give up below the name score this pair needs; the result then stays under the threshold
+        double nameSimilarity = similarityService.calculateNormalizedSimilarity(
+                name1, name2, 2 * THRESHOLD - structureSimilarity);
+        return (nameSimilarity + structureSimilarity) / 2;
+    }
+
+    /**
+     * Mirrors {@link SimilarityService#calculateStructureSimilarity} with every intermediate pair memoized.
+     * Identical child names always have a name similarity of 1.
+     */
+    private double structureSimilarity(JsonNode node1, JsonNode node2) {
+        Map<JsonNode, Double> scores = structureScores.computeIfAbsent(node1, k -> new IdentityHashMap<>());
+        Double cached = scores.get(node2);
+        if (cached != null) {
+            return cached;
+        }
+
+        double result;
+        if (!Objects.equals(node1.getType(), node2.getType())) {
+            result = 0.0;
+        } else if (node1.getChildren() != null && node1.getChildren().isEmpty()
+                && node2.getChildren() != null && node2.getChildren().isEmpty()) {
+            result = 1.0;
+        } else {
+            Map<String, JsonNode> children2 = childIndex(node2);
+            double totalScore = 0.0;
+            int comparisons = 0;
+            for (Map.Entry<String, JsonNode> entry : childIndex(node1).entrySet()) {
+                JsonNode other = children2.get(entry.getKey());
+                if (other != null) {
+                    totalScore += 1.0 + structureSimilarity(entry.getValue(), other);
+                    comparisons += 2;
+                }
+            }
+            result = comparisons > 0 ? totalScore / comparisons : 0.0;
+        }
+
+        scores.put(node2, result);
+        return result;
+    }
+
+    /**
+     * A pair with no children on one side has a structure score of 0, so it needs a name score above
+     * {@code 2 * THRESHOLD}. A subtree is worth visiting only if, at some depth, both sides have nodes with
+     * children or name lengths close enough to reach that.
+     */
+    private boolean canScoreInSubtrees(JsonNode source, JsonNode target) {
+        DepthProfile sourceProfile = depthProfile(source);
+        DepthProfile targetProfile = depthProfile(target);
+        int depth = Math.min(sourceProfile.depth(), targetProfile.depth());
+        for (int d = 0; d < depth; d++) {
+            if (sourceProfile.hasChildren[d] && targetProfile.hasChildren[d]) {
+                return true;
+            }
+            if (closestLengthRatio(sourceProfile, targetProfile, d) > 2 * THRESHOLD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double closestLengthRatio(DepthProfile a, DepthProfile b, int d) {
+        if (a.minLength[d] <= b.maxLength[d] && b.minLength[d] <= a.maxLength[d]) {
+            return 1.0;
+        }
+        return a.maxLength[d] < b.minLength[d]
+                ? lengthRatio(a.maxLength[d], b.minLength[d])
+                : lengthRatio(b.maxLength[d], a.minLength[d]);
+    }
+
+    private static double lengthRatio(int length1, int length2) {
+        int max = Math.max(length1, length2);
+        return max == 0 ? 1.0 : (double) Math.min(length1, length2) / max;
+    }
+
+    // Name length range and presence of nodes with children at each depth below a node
+    private DepthProfile depthProfile(JsonNode node) {
+        DepthProfile cached = depthProfiles.get(node);
+        if (cached != null) {
+            return cached;
+        }
+
+        int depth = 0;
+        if (node.getChildren() != null) {
+            for (JsonNode child : node.getChildren()) {
+                depth = Math.max(depth, depthProfile(child).depth() + 1);
+            }
+        }
+
+        DepthProfile profile = new DepthProfile(depth);
+        if (node.getChildren() != null) {
+            for (JsonNode child : node.getChildren()) {
+                profile.add(0, normalize(child.getName()).length, child.getChildren() != null);
+                DepthProfile childProfile = depthProfile(child);
+                for (int d = 0; d < childProfile.depth(); d++) {
+                    profile.merge(d + 1, childProfile, d);
+                }
+            }
+        }
+
+        depthProfiles.put(node, profile);
+        return profile;
+    }
+
+    private Map<String, JsonNode> childIndex(JsonNode node) {
+        return childIndexes.computeIfAbsent(node, n -> {
+            Map<String, JsonNode> index = new HashMap<>();
+            if (n.getChildren() != null) {
+                for (JsonNode child : n.getChildren()) {
+                    index.put(child.getName(), child);
+                }
+            }
+            return index;
+        });
+    }
+
+    private char[] normalize(String name) {
+        return normalizedNames.computeIfAbsent(name, n -> FieldNames.normalize(n).toCharArray());
+    }
+
+    private static final class DepthProfile {
+        final int[] minLength;
+        final int[] maxLength;
+        final boolean[] hasChildren;
+
+        DepthProfile(int depth) {
+            minLength = new int[depth];
+            maxLength = new int[depth];
+            hasChildren = new boolean[depth];
+            java.util.Arrays.fill(minLength, Integer.MAX_VALUE);
+        }
+
+        int depth() {
+            return minLength.length;
+        }
+
+        void add(int d, int length, boolean withChildren) {
+            minLength[d] = Math.min(minLength[d], length);
+            maxLength[d] = Math.max(maxLength[d], length);
+            hasChildren[d] |= withChildren;
+        }
+
+        void merge(int d, DepthProfile other, int otherDepth) {
+            minLength[d] = Math.min(minLength[d], other.minLength[otherDepth]);
+            maxLength[d] = Math.max(maxLength[d], other.maxLength[otherDepth]);
+            hasChildren[d] |= other.hasChildren[otherDepth];
+        }
+    }
+}
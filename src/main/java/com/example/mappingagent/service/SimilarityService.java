@@ -1,7 +1,6 @@
 package com.example.mappingagent.service;
 
 import com.example.mappingagent.model.JsonNode;
-import org.apache.commons.text.similarity.LevenshteinDistance;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -10,17 +9,19 @@ import java.util.Map;
 @Service
 public class SimilarityService {
 
-    private final LevenshteinDistance levenshteinDistance = new LevenshteinDistance();
+    private final NameSimilarityScorer nameScorer;
+
+    public SimilarityService(NameSimilarityScorer nameScorer) {
+        this.nameScorer = nameScorer;
+    }
 
     public double calculateNameSimilarity(String name1, String name2) {
-        String normalized1 = normalizeName(name1);
-        String normalized2 = normalizeName(name2);
-        
-        int maxLength = Math.max(normalized1.length(), normalized2.length());
-        if (maxLength == 0) return 1.0;
-        
-        int distance = levenshteinDistance.apply(normalized1, normalized2);
-        return 1.0 - (double) distance / maxLength;
+        return nameScorer.similarity(FieldNames.normalize(name1), FieldNames.normalize(name2));
+    }
+
+    // Exact when the result is at least minSimilarity, 0 otherwise
+    double calculateNormalizedSimilarity(char[] normalized1, char[] normalized2, double minSimilarity) {
+        return nameScorer.similarity(normalized1, normalized2, minSimilarity);
     }
 
     public double calculateStructureSimilarity(JsonNode node1, JsonNode node2) {
@@ -59,11 +60,4 @@ public class SimilarityService {
 
         return index;
     }
-
-    private String normalizeName(String name) {
-        return name.toLowerCase()
-                .replace("_", "")
-                .replace("-", "")
-                .replace(" ", "");
-    }
 }
\ No newline at end of file
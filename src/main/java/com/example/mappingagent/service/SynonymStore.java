@@ -0,0 +1,243 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Field names known to mean the same thing, learned from the rules of accepted mappings, e.g. {@code client} and
+ * {@code customer}. Names are compared normalized and pairs work in both directions. Every accepted pair is
+ * appended to an NDJSON log; on startup the log is replayed and rewritten with one line per pair and its count.
+ */
+@Component
+public class SynonymStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SynonymStore.class);
+
+    private final ObjectMapper objectMapper;
+    private final Path logFile;
+    private final double minConfidence;
+
+    // Normalized name -> normalized synonym -> how often the pair was accepted
+    private final Map<String, Map<String, Integer>> synonyms = new ConcurrentHashMap<>();
+    // Sum of all counts; only grows, and survives a restart along with the log
+    private final AtomicLong version = new AtomicLong();
+    private BufferedWriter writer;
+
+    public SynonymStore(ObjectMapper objectMapper,
+                        @Value("${mapping.synonyms.store-file:}") String logFile,
+                        @Value("${mapping.synonyms.min-confidence:0.8}") double minConfidence) {
+        this.objectMapper = objectMapper;
+        this.logFile = logFile.isBlank() ? null : Path.of(logFile);
+        this.minConfidence = minConfidence;
+    }
+
+    // One line of the log; appended lines have a count of 1
+    record Entry(String source, String target, int count) {}
+
+    /**
+     * Pairs each source field with an unmatched target field it is a known synonym of. When a source has several,
+     * the pair accepted most often wins, and no target is given to two sources.
+     */
+    public Map<String, String> findMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+        Map<String, String> matches = new HashMap<>();
+        if (synonyms.isEmpty() || sourceFields.isEmpty() || targetFields.isEmpty()) {
+            return matches;
+        }
+
+        Map<String, List<String>> targetsByName = new HashMap<>();
+        for (JsonNode target : targetFields) {
+            targetsByName.computeIfAbsent(FieldNames.normalize(target.getName()), k -> new ArrayList<>())
+                    .add(target.getName());
+        }
+
+        List<Entry> candidates = new ArrayList<>();
+        for (JsonNode source : sourceFields) {
+            Map<String, Integer> known = synonyms.get(FieldNames.normalize(source.getName()));
+            if (known == null) {
+                continue;
+            }
+            known.forEach((synonym, count) -> {
+                for (String target : targetsByName.getOrDefault(synonym, List.of())) {
+                    candidates.add(new Entry(source.getName(), target, count));
+                }
+            });
+        }
+        // Ties are broken by name so the result never depends on map order
+        candidates.sort(Comparator.comparingInt(Entry::count).reversed()
+                .thenComparing(Entry::source)
+                .thenComparing(Entry::target));
+
+        Set<String> usedTargets = new HashSet<>();
+        for (Entry candidate : candidates) {
+            if (!matches.containsKey(candidate.source()) && usedTargets.add(candidate.target())) {
+                matches.put(candidate.source(), candidate.target());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Learns the leaf names of every rule with at least the minimum confidence. Rules between equal names teach
+     * nothing, exact matching already finds them.
+     *
+     * @return how many of the pairs were not known before
+     */
+    public synchronized int learn(List<MappingRule> rules) {
+        int learned = 0;
+        for (MappingRule rule : rules) {
+            if (rule.getConfidenceScore() < minConfidence || rule.getSourcePath() == null
+                    || rule.getTargetPath() == null) {
+                continue;
+            }
+            String source = FieldNames.normalize(leafName(rule.getSourcePath()));
+            String target = FieldNames.normalize(leafName(rule.getTargetPath()));
+            if (source.isEmpty() || target.isEmpty() || source.equals(target)) {
+                continue;
+            }
+            if (add(source, target, 1)) {
+                learned++;
+            }
+            append(new Entry(source, target, 1));
+        }
+        return learned;
+    }
+
+    // Array levels are named after their element, so the leaf is the last name that is not one
+    private static String leafName(String path) {
+        String[] names = path.split("\\.");
+        for (int i = names.length - 1; i >= 0; i--) {
+            if (!SchemaParser.ARRAY_ITEM_NAME.equals(names[i])) {
+                return names[i];
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Changes whenever a pair is learned or accepted again. As long as it is the same, {@link #findMatches} answers
+     * the same, so anything derived from it is still current.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    // Returns true for a pair that was not known before
+    private boolean add(String source, String target, int count) {
+        version.addAndGet(count);
+        int total = synonyms.computeIfAbsent(source, k -> new ConcurrentHashMap<>())
+                .merge(target, count, Integer::sum);
+        synonyms.computeIfAbsent(target, k -> new ConcurrentHashMap<>()).merge(source, count, Integer::sum);
+        return total == count;
+    }
+
+    private void append(Entry entry) {
+        if (logFile == null) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(logFile.toAbsolutePath().getParent());
+                writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(objectMapper.writeValueAsString(entry));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to synonym log " + logFile, e);
+        }
+    }
+
+    @PostConstruct
+    synchronized void load() {
+        if (logFile == null || !Files.exists(logFile)) {
+            return;
+        }
+        Map<String, Map<String, Integer>> pairs = new HashMap<>();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Entry entry = objectMapper.readValue(line, Entry.class);
+                    pairs.computeIfAbsent(entry.source(), k -> new HashMap<>())
+                            .merge(entry.target(), entry.count(), Integer::sum);
+                } catch (IOException e) {
+                    // A crash mid-append can leave a torn last line
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read synonym log {}", logFile, e);
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        pairs.forEach((source, targets) -> targets.forEach((target, count) -> {
+            add(source, target, count);
+            entries.add(new Entry(source, target, count));
+        }));
+        compact(entries);
+        log.info("Loaded {} synonym pairs from {} ({} unreadable lines skipped)", entries.size(), logFile, skipped);
+    }
+
+    // Rewrites the log with one line per logged pair and its total count
+    private void compact(List<Entry> entries) {
+        try {
+            Path parent = logFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "synonyms", ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Entry entry : entries) {
+                    out.write(objectMapper.writeValueAsString(entry));
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not compact synonym log {}", logFile, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Could not close synonym log {}", logFile, e);
+        }
+        writer = null;
+    }
+}
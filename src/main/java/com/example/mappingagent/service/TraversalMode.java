@@ -0,0 +1,11 @@
+package com.example.mappingagent.service;
+
+// How EnhancedMappingService walks the schema trees and asks for field matches
+public enum TraversalMode {
+    // One findBestMatches call per object pair, in tree order
+    SEQUENTIAL,
+    // Matches for a whole tree level are resolved up front with batched LLM prompts
+    BATCHED,
+    // Sibling subtrees are matched in parallel on the mapping executor
+    CONCURRENT
+}
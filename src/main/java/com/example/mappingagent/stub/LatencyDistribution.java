@@ -0,0 +1,21 @@
+package com.example.mappingagent.stub;
+
+import java.util.Random;
+
+// How long the Ollama stand-in waits before its first token
+public enum LatencyDistribution {
+    // Always the median
+    FIXED,
+    // Evenly spread between zero and twice the median
+    UNIFORM,
+    // Median times e^(sigma * N(0, 1)); a long right tail like real model latencies
+    LOGNORMAL;
+
+    long sampleMillis(long medianMillis, double sigma, Random random) {
+        return switch (this) {
+            case FIXED -> medianMillis;
+            case UNIFORM -> (long) (random.nextDouble() * 2 * medianMillis);
+            case LOGNORMAL -> (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+        };
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.mappingagent.stub;
+
+import com.example.mappingagent.service.SimilarityService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for Ollama's chat API, started with the {@code ollama-stub} profile so load tests and benchmarks
+ * of the mapping pipeline run without a model. {@code POST /api/chat} answers streaming and non-streaming
+ * requests with {@link StubAnswers}: a sampled latency before the first token, then tokens at a fixed rate.
+ * {@code POST /api/embeddings} answers after the same sampled latency. A configurable share of requests fails with
+ * an error status instead. Latencies and failures come from a seeded generator, so a run with the same seed and
+ * request order sees the same sequence. Several stand-ins on consecutive ports can serve as the nodes of an
+ * {@link com.example.mappingagent.service.OllamaBackendPool}; they share the generator and answers.
+ */
+@Component
+@Profile("ollama-stub")
+public class OllamaStubServer {
+
+    private static final Logger log = LoggerFactory.getLogger(OllamaStubServer.class);
+
+    private final ObjectMapper objectMapper;
+    private final StubAnswers answers;
+    private final int port;
+    private final int nodes;
+    private final LatencyDistribution latency;
+    private final long latencyMedianMillis;
+    private final double latencySigma;
+    private final long nanosPerToken;
+    private final double errorRate;
+    private final int errorStatus;
+    private final Random random;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private ExecutorService executor;
+
+    public OllamaStubServer(ObjectMapper objectMapper,
+                            SimilarityService similarityService,
+                            @Value("${mapping.ollama-stub.port:11435}") int port,
+                            @Value("${mapping.ollama-stub.nodes:1}") int nodes,
+                            @Value("${mapping.ollama-stub.latency:lognormal}") LatencyDistribution latency,
+                            @Value("${mapping.ollama-stub.latency-median:200ms}") Duration latencyMedian,
+                            @Value("${mapping.ollama-stub.latency-sigma:0.5}") double latencySigma,
+                            @Value("${mapping.ollama-stub.tokens-per-second:50}") double tokensPerSecond,
+                            @Value("${mapping.ollama-stub.error-rate:0}") double errorRate,
+                            @Value("${mapping.ollama-stub.error-status:500}") int errorStatus,
+                            @Value("${mapping.ollama-stub.match-threshold:0.5}") double matchThreshold,
+                            @Value("${mapping.ollama-stub.seed:42}") long seed) {
+        this.objectMapper = objectMapper;
+        this.answers = new StubAnswers(similarityService, objectMapper, matchThreshold);
+        this.port = port;
+        this.nodes = Math.max(1, nodes);
+        this.latency = latency;
+        this.latencyMedianMillis = latencyMedian.toMillis();
+        this.latencySigma = latencySigma;
+        this.nanosPerToken = tokensPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond) : 0;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.random = new Random(seed);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-stub-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < nodes; i++) {
+            servers.add(startServer(port + i));
+        }
+    }
+
+    private HttpServer startServer(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/chat", this::handleChat);
+        server.createContext("/api/embeddings", this::handleEmbeddings);
+        server.createContext("/api/tags", exchange -> respond(exchange, 200, objectMapper.writeValueAsBytes(
+                objectMapper.createObjectNode().set("models", objectMapper.createArrayNode()))));
+        // Same liveness answer as Ollama's root path; nothing else is implemented
+        server.createContext("/", exchange -> {
+            if ("/".equals(exchange.getRequestURI().getPath())) {
+                respond(exchange, 200, "Ollama is running".getBytes(StandardCharsets.UTF_8));
+            } else {
+                respond(exchange, 404, error("not found"));
+            }
+        });
+        server.start();
+        log.info("Ollama stand-in listening on port {}", server.getAddress().getPort());
+        return server;
+    }
+
+    @PreDestroy
+    void stop() {
+        servers.forEach(server -> server.stop(0));
+        executor.shutdownNow();
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("method not allowed"));
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String model = request.path("model").asText("llama3");
+            // Ollama streams unless told otherwise
+            boolean stream = request.path("stream").asBoolean(true);
+
+            long started = System.nanoTime();
+            if (sampleFailure()) {
+                respond(exchange, errorStatus, error("injected failure"));
+                return;
+            }
+
+            String prompt = lastUserMessage(request);
+            int promptTokens = tokens(prompt).size();
+            List<String> tokens = tokens(answers.answer(prompt));
+            if (stream) {
+                exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                for (String token : tokens) {
+                    pause(nanosPerToken);
+                    writeLine(body, message(model, token, false));
+                }
+                writeLine(body, done(message(model, "", true), promptTokens, tokens.size(), started));
+            } else {
+                pause(nanosPerToken * tokens.size());
+                ObjectNode response = done(message(model, String.join("", tokens), true),
+                        promptTokens, tokens.size(), started);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                respond(exchange, 200, objectMapper.writeValueAsBytes(response));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Usually the client gave up, e.g. a timed out or hedged request
+            log.debug("Ollama stand-in could not answer", e);
+        }
+    }
+
+    private void handleEmbeddings(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("method not allowed"));
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            if (sampleFailure()) {
+                respond(exchange, errorStatus, error("injected failure"));
+                return;
+            }
+            ObjectNode response = objectMapper.createObjectNode();
+            ArrayNode embedding = response.putArray("embedding");
+            for (double value : answers.embedding(request.path("prompt").asText(""))) {
+                embedding.add(value);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            respond(exchange, 200, objectMapper.writeValueAsBytes(response));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.debug("Ollama stand-in could not answer", e);
+        }
+    }
+
+    // Waits out a sampled latency and tells whether to fail the request
+    private boolean sampleFailure() throws InterruptedException {
+        long latencyMillis;
+        boolean fail;
+        synchronized (random) {
+            latencyMillis = Math.max(0, latency.sampleMillis(latencyMedianMillis, latencySigma, random));
+            fail = random.nextDouble() < errorRate;
+        }
+        pause(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        return fail;
+    }
+
+    private static String lastUserMessage(JsonNode request) {
+        String prompt = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                prompt = message.path("content").asText("");
+            }
+        }
+        return prompt;
+    }
+
+    // Words with their trailing whitespace, a rough stand-in for model tokens
+    private static List<String> tokens(String content) {
+        return content.isEmpty() ? List.of() : List.of(content.split("(?<=\\s)"));
+    }
+
+    private ObjectNode message(String model, String content, boolean done) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("model", model);
+        chunk.put("created_at", Instant.now().toString());
+        ObjectNode message = chunk.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        chunk.put("done", done);
+        return chunk;
+    }
+
+    private static ObjectNode done(ObjectNode chunk, int promptTokens, int tokenCount, long startedNanos) {
+        long total = System.nanoTime() - startedNanos;
+        chunk.put("done_reason", "stop");
+        chunk.put("total_duration", total);
+        chunk.put("load_duration", 0);
+        chunk.put("prompt_eval_count", promptTokens);
+        chunk.put("eval_count", tokenCount);
+        chunk.put("eval_duration", total);
+        return chunk;
+    }
+
+    private byte[] error(String message) throws IOException {
+        return objectMapper.writeValueAsBytes(objectMapper.createObjectNode().put("error", message));
+    }
+
+    private void writeLine(OutputStream body, ObjectNode chunk) throws IOException {
+        body.write(objectMapper.writeValueAsBytes(chunk));
+        body.write('\n');
+        body.flush();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void pause(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+}
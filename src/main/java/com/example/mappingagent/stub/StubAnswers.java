@@ -0,0 +1,127 @@
+package com.example.mappingagent.stub;
+
+import com.example.mappingagent.service.SimilarityService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers the prompts LLMService sends the way a model would, but deterministically: each source field is paired
+ * with its most similar unused target field by name similarity, if that is at least the threshold. Batched prompts
+ * get the JSON object they ask for, single prompts "source:target" lines. Anything else gets a fixed reply.
+ * Embeddings hash the character trigrams of the text, so texts that share spelling get similar vectors.
+ */
+final class StubAnswers {
+
+    private static final Pattern GROUP = Pattern.compile("(?m)^Group (\\d+)\\s*$");
+    private static final Pattern SOURCE_FIELDS = Pattern.compile("(?m)^Source fields: (.*)$");
+    private static final Pattern TARGET_FIELDS = Pattern.compile("(?m)^Target fields: (.*)$");
+    private static final int EMBEDDING_DIMENSIONS = 256;
+
+    private final SimilarityService similarityService;
+    private final ObjectMapper objectMapper;
+    private final double threshold;
+
+    StubAnswers(SimilarityService similarityService, ObjectMapper objectMapper, double threshold) {
+        this.similarityService = similarityService;
+        this.objectMapper = objectMapper;
+        this.threshold = threshold;
+    }
+
+    String answer(String prompt) {
+        Matcher group = GROUP.matcher(prompt);
+        if (group.find()) {
+            return batchAnswer(prompt, group);
+        }
+        List<String> sources = fields(SOURCE_FIELDS, prompt);
+        List<String> targets = fields(TARGET_FIELDS, prompt);
+        if (sources != null && targets != null) {
+            StringBuilder lines = new StringBuilder();
+            match(sources, targets).forEach((source, target) ->
+                    lines.append(source).append(':').append(target).append('\n'));
+            return lines.toString();
+        }
+        return "This is a response from the local Ollama stand-in to a prompt of " + prompt.length() + " characters.";
+    }
+
+    private String batchAnswer(String prompt, Matcher group) {
+        ObjectNode answer = objectMapper.createObjectNode();
+        boolean more = true;
+        while (more) {
+            String number = group.group(1);
+            int start = group.end();
+            more = group.find();
+            String block = prompt.substring(start, more ? group.start() : prompt.length());
+            List<String> sources = fields(SOURCE_FIELDS, block);
+            List<String> targets = fields(TARGET_FIELDS, block);
+            ObjectNode matches = answer.putObject(number);
+            if (sources != null && targets != null) {
+                match(sources, targets).forEach(matches::put);
+            }
+        }
+        try {
+            return objectMapper.writeValueAsString(answer);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Greedy one-to-one pairing, best scores first; ties are broken by name so the answer never varies
+    private Map<String, String> match(List<String> sources, List<String> targets) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String source : sources) {
+            for (String target : targets) {
+                double score = similarityService.calculateNameSimilarity(source, target);
+                if (score >= threshold) {
+                    candidates.add(new Candidate(source, target, score));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::score).reversed()
+                .thenComparing(Candidate::source)
+                .thenComparing(Candidate::target));
+
+        Map<String, String> matches = new LinkedHashMap<>();
+        Set<String> usedTargets = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            if (!matches.containsKey(candidate.source()) && usedTargets.add(candidate.target())) {
+                matches.put(candidate.source(), candidate.target());
+            }
+        }
+        return matches;
+    }
+
+    double[] embedding(String text) {
+        double[] embedding = new double[EMBEDDING_DIMENSIONS];
+        String padded = " " + text.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim() + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            embedding[Math.floorMod(padded.substring(i, i + 3).hashCode(), EMBEDDING_DIMENSIONS)] += 1;
+        }
+        return embedding;
+    }
+
+    private static List<String> fields(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        return Arrays.stream(matcher.group(1).split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+    }
+
+    private record Candidate(String source, String target, double score) {}
+}
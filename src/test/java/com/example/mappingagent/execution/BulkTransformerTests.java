@@ -0,0 +1,156 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.BulkTransformSummary;
+import com.example.mappingagent.model.MappingConfiguration;
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkTransformerTests {
+
+	private final MappingEngine mappingEngine = new MappingEngine(new ObjectMapper(), -1, 0);
+
+	private final MappingPlan plan = mappingEngine.compile(configuration(rule("id", "key"), rule("name", "label")));
+
+	private final List<BulkTransformer> transformers = new ArrayList<>();
+
+	private Path dir;
+
+	@BeforeEach
+	void createDirectory() throws IOException {
+		dir = Files.createTempDirectory("bulk-transformer-tests");
+	}
+
+	@AfterEach
+	void cleanUp() throws IOException {
+		transformers.forEach(BulkTransformer::shutdown);
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	@Test
+	void writesRecordsInInputOrderAcrossChunksAndWorkers() throws Exception {
+		// Chunks of a few lines each, spread over four workers with at most two in flight
+		BulkTransformer transformer = transformer(64, 4, 2);
+		StringBuilder input = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			input.append("{\"id\":").append(i).append(",\"name\":\"n").append(i).append("\"}\n");
+			expected.add("{\"key\":" + i + ",\"label\":\"n" + i + "\"}");
+		}
+		Path in = write("in.ndjson", input.toString());
+		Path out = dir.resolve("out.ndjson");
+
+		BulkTransformSummary summary = transformer.transform(plan, in, out);
+
+		assertThat(Files.readAllLines(out)).isEqualTo(expected);
+		assertThat(summary.getRecords()).isEqualTo(500L);
+		assertThat(summary.getFailedRecords()).isEqualTo(0L);
+		assertThat(summary.getBytesRead()).isEqualTo((long) input.length());
+		assertThat(summary.getBytesWritten()).isEqualTo(Files.size(out));
+	}
+
+	@Test
+	void widensChunksForLinesLongerThanTheChunkSize() throws Exception {
+		BulkTransformer transformer = transformer(16, 2, 2);
+		String longName = "x".repeat(1000);
+		Path in = write("in.ndjson", """
+				{"id": 1, "name": "a"}
+				{"id": 2, "name": "%s"}
+				{"id": 3, "name": "c"}""".formatted(longName));
+		Path out = dir.resolve("out.ndjson");
+
+		BulkTransformSummary summary = transformer.transform(plan, in, out);
+
+		assertThat(Files.readAllLines(out)).containsExactly(
+				"{\"key\":1,\"label\":\"a\"}",
+				"{\"key\":2,\"label\":\"" + longName + "\"}",
+				"{\"key\":3,\"label\":\"c\"}");
+		assertThat(summary.getRecords()).isEqualTo(3L);
+	}
+
+	@Test
+	void skipsBlankLinesAndCountsInvalidOnes() throws Exception {
+		BulkTransformer transformer = transformer(1 << 20, 2, 2);
+		Path in = write("in.ndjson", """
+				{"id": 1}
+
+				  \t
+				{"id": 2
+				{"id": 3} trailing
+				{"id": 4}{"id": 5}
+				{"id": 6} }
+				{"id": 7}\r
+				{"id": 8}
+				""");
+		Path out = dir.resolve("out.ndjson");
+
+		BulkTransformSummary summary = transformer.transform(plan, in, out);
+
+		// Nothing of a record with content after it is kept
+		assertThat(Files.readAllLines(out)).containsExactly("{\"key\":1}", "{\"key\":7}", "{\"key\":8}");
+		assertThat(summary.getRecords()).isEqualTo(3L);
+		assertThat(summary.getFailedRecords()).isEqualTo(4L);
+	}
+
+	@Test
+	void keepsThePreviousOutputWhenARunFails() throws Exception {
+		BulkTransformer transformer = transformer(64, 2, 2);
+		Path in = write("in.ndjson", "{\"id\": 1}\n{\"id\": 2}\n");
+		Path out = write("out.ndjson", "previous\n");
+		// No worker takes the chunks, so the run fails after its temporary file was created
+		transformer.shutdown();
+
+		assertThatThrownBy(() -> transformer.transform(plan, in, out)).isInstanceOf(RejectedExecutionException.class);
+
+		assertThat(Files.readAllLines(out)).containsExactly("previous");
+		try (Stream<Path> files = Files.list(dir)) {
+			assertThat(files.map(file -> file.getFileName().toString()).toList())
+					.containsOnly("in.ndjson", "out.ndjson");
+		}
+	}
+
+	private BulkTransformer transformer(int chunkSize, int threads, int maxChunksInFlight) {
+		BulkTransformer transformer = new BulkTransformer(mappingEngine, new SimpleMeterRegistry(), "", threads,
+				DataSize.ofBytes(chunkSize), maxChunksInFlight);
+		transformers.add(transformer);
+		return transformer;
+	}
+
+	private Path write(String name, String content) throws IOException {
+		return Files.writeString(dir.resolve(name), content);
+	}
+
+	private static MappingConfiguration configuration(MappingRule... rules) {
+		MappingConfiguration configuration = new MappingConfiguration();
+		configuration.setRules(List.of(rules));
+		return configuration;
+	}
+
+	private static MappingRule rule(String sourcePath, String targetPath) {
+		MappingRule rule = new MappingRule();
+		rule.setSourcePath(sourcePath);
+		rule.setTargetPath(targetPath);
+		rule.setConfidenceScore(1.0);
+		return rule;
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappingPlanTests {
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	@Test
+	void renamesAndMovesFields() throws Exception {
+		List<MappingRule> rules = List.of(
+				rule("id", "orderId", null),
+				rule("customer.name", "buyer.fullName", null),
+				rule("customer.address.city", "city", null),
+				rule("customer.address", "buyer.address", null));
+
+		assertTransforms(rules, """
+				{"id": 7, "ignored": [1, 2], "customer": {"name": "Ada", "address": {"city": "Oslo", "zip": "0150"}}}
+				""", """
+				{"orderId":7,"buyer":{"fullName":"Ada","address":{"city":"Oslo","zip":"0150"}},"city":"Oslo"}""");
+	}
+
+	@Test
+	void pairsTargetArraysWithSourceArrays() throws Exception {
+		List<MappingRule> rules = List.of(
+				rule("lines.item.sku", "items.item.code", null),
+				rule("lines.item.qty", "items.item.quantity", null),
+				rule("lines.item.tags.item", "items.item.labels.item", null));
+
+		// An element with nothing mapped stays in place as null
+		assertTransforms(rules, """
+				{"lines": [{"sku": "A1", "qty": 2, "tags": ["new", "sale"]}, {"sku": "B2", "tags": []}, {}]}
+				""", """
+				{"items":[{"code":"A1","quantity":2,"labels":["new","sale"]},{"code":"B2","labels":[]},null]}""");
+		assertTransforms(rules, """
+				{"lines": []}
+				""", """
+				{"items":[]}""");
+	}
+
+	@Test
+	void usesTheFirstElementOfUnpairedSourceArrays() throws Exception {
+		List<MappingRule> rules = List.of(
+				rule("notes.item", "note", null),
+				rule("lines.item.sku", "firstSku", null));
+
+		assertTransforms(rules, """
+				{"notes": ["first", "second"], "lines": [{"qty": 1}, {"sku": "B2"}]}
+				""", """
+				{"note":"first"}""");
+	}
+
+	@Test
+	void wrapsValuesOutsideArraysInOneElementTargetArrays() throws Exception {
+		List<MappingRule> rules = List.of(
+				rule("customer.name", "names.item", null),
+				rule("customer.vip", "flags.item.vip", null));
+
+		assertTransforms(rules, """
+				{"customer": {"name": "Ada", "vip": true}}
+				""", """
+				{"names":["Ada"],"flags":[{"vip":true}]}""");
+	}
+
+	@Test
+	void appliesEachTransformation() throws Exception {
+		List<MappingRule> rules = List.of(
+				rule("a", "direct", "direct"),
+				rule("a", "string", "string"),
+				rule("a", "number", "NUMBER"),
+				rule("a", "boolean", "Boolean"),
+				rule("b", "bString", "string"),
+				rule("b", "bNumber", "number"),
+				rule("c", "cNumber", "number"),
+				rule("c", "cBoolean", "boolean"),
+				rule("d", "dString", "string"),
+				rule("d", "dNumber", "number"),
+				rule("e", "eDirect", null),
+				rule("e", "eString", "string"));
+
+		assertTransforms(rules, """
+				{"a": " 2.50 ", "b": true, "c": 0, "d": {"x": [1, "y"]}, "e": null}
+				""", """
+				{"direct":" 2.50 ","string":" 2.50 ","number":2.50,"boolean":null,"bString":"true","bNumber":1,\
+				"cNumber":0,"cBoolean":false,"dString":"{\\"x\\":[1,\\"y\\"]}","dNumber":null,"eDirect":null,\
+				"eString":null}""");
+		assertTransforms(List.of(rule("t", "t", "boolean"), rule("f", "f", "boolean"), rule("n", "n", "boolean")), """
+				{"t": "TRUE ", "f": "false", "n": "yes"}
+				""", """
+				{"t":true,"f":false,"n":null}""");
+	}
+
+	@Test
+	void rejectsUnknownTransformations() {
+		assertThatThrownBy(() -> PlanCompiler.compile(List.of(rule("a", "b", "uppercase")), jsonFactory, -1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void skipsRulesThatPairATargetArrayWithAnotherSourceArray() throws Exception {
+		MappingRule conflicting = rule("notes.item", "items.item.note", null);
+		List<MappingRule> rules = List.of(rule("lines.item.sku", "items.item.code", null), conflicting);
+
+		MappingPlan plan = PlanCompiler.compile(rules, jsonFactory, -1);
+
+		assertThat(plan.ruleCount()).isEqualTo(1);
+		assertThat(plan.skippedRules()).containsExactly(conflicting);
+		assertThat(plan.transform("""
+				{"lines": [{"sku": "A1"}], "notes": ["n"]}
+				""")).isEqualTo("""
+				{"items":[{"code":"A1"}]}""");
+	}
+
+	@Test
+	void dropsTargetContainersWithNothingMapped() throws Exception {
+		List<MappingRule> rules = List.of(
+				rule("id", "id", null),
+				rule("customer.name", "buyer.profile.name", null),
+				rule("customer.name", "aliases.item", null),
+				rule("lines.item.sku", "items.item.code", null));
+
+		assertTransforms(rules, """
+				{"id": 1, "customer": {}}
+				""", """
+				{"id":1}""");
+		// Still one value per document
+		assertTransforms(rules, "{}", "{}");
+		assertTransforms(List.of(rule("lines.item.sku", "item.code", null)), "{}", "[]");
+	}
+
+	// Both tiers: an interpreted plan, and one compiled on its first document
+	private void assertTransforms(List<MappingRule> rules, String document, String expected) throws Exception {
+		MappingPlan interpreted = PlanCompiler.compile(rules, jsonFactory, -1);
+		MappingPlan compiled = PlanCompiler.compile(rules, jsonFactory, 0);
+
+		assertThat(interpreted.transform(document)).isEqualTo(expected);
+		assertThat(compiled.transform(document)).isEqualTo(expected);
+		assertThat(compiled.isCompiled()).isTrue();
+	}
+
+	private static MappingRule rule(String sourcePath, String targetPath, String transformation) {
+		MappingRule rule = new MappingRule();
+		rule.setSourcePath(sourcePath);
+		rule.setTargetPath(targetPath);
+		rule.setTransformation(transformation);
+		rule.setConfidenceScore(1.0);
+		return rule;
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.mappingagent.execution;
+
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlanBytecodeCompilerTests {
+
+	private static final String ORDER = """
+			{"id": 7, "customer": {"name": "Ada", "vip": "true"},
+			 "lines": [
+			   {"sku": "A1", "qty": "2", "tags": ["new", "sale"], "price": {"amount": 9.5}},
+			   {"sku": "B2", "tags": []},
+			   {"qty": 1, "price": null},
+			   {"sku": "C3", "qty": 4, "tags": ["last"], "price": {"amount": 1}}
+			 ],
+			 "notes": ["first", "second"],
+			 "extra": {"ignored": [1, 2, {"x": 3}]}}
+			""";
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	@Test
+	void compilesPairedAndNestedArraysToTheSameOutput() throws Exception {
+		assertSameOutput(List.of(
+				rule("id", "orderId", "string"),
+				rule("customer.name", "buyer.name", null),
+				rule("customer.vip", "buyer.vip", "boolean"),
+				rule("lines.item.sku", "items.item.code", null),
+				rule("lines.item.qty", "items.item.quantity", "number"),
+				rule("lines.item.price.amount", "items.item.price", null),
+				rule("lines.item.tags.item", "items.item.labels.item", null),
+				rule("lines.item.price", "items.item.details.price", null),
+				rule("id", "items.item.orderId", null)),
+				ORDER,
+				"""
+				{"lines": {"sku": "not an array"}}
+				""",
+				"""
+				{"lines": [], "customer": {}}
+				""",
+				"{}",
+				"[1, 2]");
+	}
+
+	@Test
+	void compilesUnpairedArraysToTheSameOutput() throws Exception {
+		assertSameOutput(List.of(
+				// Only the first element of an array no target array pairs with
+				rule("notes.item", "note", null),
+				rule("lines.item.sku", "firstSku", null),
+				// One-element target arrays built from values outside any array
+				rule("customer.name", "names.item", null),
+				rule("customer.vip", "flags.item.vip", "boolean"),
+				rule("lines.item.tags.item", "tags.item", null)),
+				ORDER,
+				"""
+				{"notes": [], "lines": [{"tags": ["only"]}]}
+				""",
+				"{}");
+	}
+
+	@Test
+	void compilesTargetsThatAreOnlyAnArray() throws Exception {
+		assertSameOutput(List.of(
+				rule("lines.item.sku", "item.code", null),
+				rule("lines.item.tags", "item.tags", null)),
+				ORDER,
+				"""
+				{"lines": [{}, {"sku": "X"}]}
+				""",
+				"{}");
+	}
+
+	// The same documents through an interpreted plan and one compiled on its first document
+	private void assertSameOutput(List<MappingRule> rules, String... documents) throws Exception {
+		MappingPlan interpreted = PlanCompiler.compile(rules, jsonFactory, -1);
+		MappingPlan compiled = PlanCompiler.compile(rules, jsonFactory, 0);
+
+		List<String> expected = new ArrayList<>();
+		List<String> actual = new ArrayList<>();
+		for (String document : documents) {
+			expected.add(interpreted.transform(document));
+			actual.add(compiled.transform(document));
+		}
+
+		assertThat(compiled.isCompiled()).isTrue();
+		assertThat(interpreted.isCompiled()).isFalse();
+		assertThat(actual).isEqualTo(expected);
+	}
+
+	private static MappingRule rule(String sourcePath, String targetPath, String transformation) {
+		MappingRule rule = new MappingRule();
+		rule.setSourcePath(sourcePath);
+		rule.setTargetPath(targetPath);
+		rule.setTransformation(transformation);
+		rule.setConfidenceScore(1.0);
+		return rule;
+	}
+}
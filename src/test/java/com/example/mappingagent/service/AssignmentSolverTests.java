@@ -0,0 +1,43 @@
+package com.example.mappingagent.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AssignmentSolverTests {
+
+	@Test
+	void prefersTheBestTotalOverGreedyPicks() {
+		// Greedy would give target 0 to both sources; the optimum splits them
+		double[][] scores = {
+				{0.95, 0.90},
+				{0.94, 0.10}
+		};
+
+		assertThat(AssignmentSolver.maximize(scores, 0.6)).containsExactly(1, 0);
+	}
+
+	@Test
+	void leavesRowsWithoutCandidatesUnassigned() {
+		double[][] scores = {
+				{0.70, 0.20, 0.10},
+				{0.80, 0.30, 0.10},
+				{0.10, 0.20, 0.50}
+		};
+
+		assertThat(AssignmentSolver.maximize(scores, 0.6))
+				.containsExactly(AssignmentSolver.UNASSIGNED, 0, AssignmentSolver.UNASSIGNED);
+	}
+
+	@Test
+	void handlesMoreRowsThanColumns() {
+		double[][] scores = {
+				{0.90},
+				{0.99},
+				{0.70}
+		};
+
+		assertThat(AssignmentSolver.maximize(scores, 0.6))
+				.containsExactly(AssignmentSolver.UNASSIGNED, 0, AssignmentSolver.UNASSIGNED);
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.mappingagent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedLevenshteinScorerTests {
+
+	private static final double[] THRESHOLDS = {0.0, 0.1, 0.25, 0.4, 0.5, 0.6, 2.0 / 3, 0.75, 0.8, 0.9, 1.0};
+
+	private final BoundedLevenshteinScorer scorer = new BoundedLevenshteinScorer();
+
+	@Test
+	void matchesTheFullDistanceOnRandomNames() {
+		Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			// A small alphabet so that names share characters, with lengths up to 40 so the rows have to grow
+			String left = name(random, random.nextInt(random.nextInt(5) == 0 ? 41 : 12));
+			String right = random.nextBoolean() ? edit(random, left) : name(random, random.nextInt(12));
+
+			assertScores(left, right);
+		}
+	}
+
+	@Test
+	void scoresEmptyNames() {
+		assertThat(scorer.similarity("", "")).isEqualTo(1.0);
+		assertThat(scorer.similarity(new char[0], new char[0], 0.9)).isEqualTo(1.0);
+		assertThat(scorer.similarity("", "abcd")).isEqualTo(0.0);
+		assertThat(scorer.similarity("abcd".toCharArray(), new char[0], 0.0)).isEqualTo(0.0);
+		assertThat(scorer.similarity(new char[0], "abcd".toCharArray(), 0.5)).isLessThan(0.5);
+		assertScores("", "a");
+		assertScores("a", "");
+	}
+
+	@Test
+	void scoresNamesOfVeryDifferentLengths() {
+		String shortName = "id";
+		String longName = "customeridentificationnumberforbilling";
+
+		assertScores(shortName, longName);
+		assertScores(longName, shortName);
+		assertThat(scorer.similarity(shortName.toCharArray(), longName.toCharArray(), 0.5)).isLessThan(0.5);
+		// Within the length difference the exact score is still returned
+		assertThat(scorer.similarity("ab".toCharArray(), "abcde".toCharArray(), 0.4)).isEqualTo(0.4);
+		assertThat(scorer.similarity("ab".toCharArray(), "abcdef".toCharArray(), 0.4)).isLessThan(0.4);
+	}
+
+	@Test
+	void scoresBorderlineNamesExactly() {
+		// Distance 1 over 3, 2 over 6 and 3 over 10: each exactly on or just below its threshold
+		assertThat(scorer.similarity("abc".toCharArray(), "abd".toCharArray(), 2.0 / 3)).isEqualTo(1.0 - 1.0 / 3);
+		assertThat(scorer.similarity("abcdef".toCharArray(), "abcxyf".toCharArray(), 2.0 / 3))
+				.isEqualTo(1.0 - 2.0 / 6);
+		assertThat(scorer.similarity("abcdefghij".toCharArray(), "abcdefgxyz".toCharArray(), 0.7))
+				.isEqualTo(1.0 - 3.0 / 10);
+		assertThat(scorer.similarity("abcdefghij".toCharArray(), "abcdefwxyz".toCharArray(), 0.7)).isLessThan(0.7);
+	}
+
+	private void assertScores(String left, String right) {
+		double exact = fullSimilarity(left, right);
+		assertThat(scorer.similarity(left, right)).as(left + " / " + right).isEqualTo(exact);
+		for (double threshold : THRESHOLDS) {
+			double bounded = scorer.similarity(left.toCharArray(), right.toCharArray(), threshold);
+			if (exact >= threshold) {
+				assertThat(bounded).as(left + " / " + right + " at " + threshold).isEqualTo(exact);
+			} else {
+				assertThat(bounded).as(left + " / " + right + " at " + threshold).isLessThan(threshold);
+			}
+		}
+	}
+
+	private static double fullSimilarity(String left, String right) {
+		int maxLength = Math.max(left.length(), right.length());
+		if (maxLength == 0) {
+			return 1.0;
+		}
+		int[][] distances = new int[left.length() + 1][right.length() + 1];
+		for (int i = 0; i <= left.length(); i++) {
+			for (int j = 0; j <= right.length(); j++) {
+				distances[i][j] = i == 0 ? j : j == 0 ? i : Math.min(
+						distances[i - 1][j - 1] + (left.charAt(i - 1) == right.charAt(j - 1) ? 0 : 1),
+						Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+			}
+		}
+		return 1.0 - (double) distances[left.length()][right.length()] / maxLength;
+	}
+
+	private static String name(Random random, int length) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			name.append((char) ('a' + random.nextInt(4)));
+		}
+		return name.toString();
+	}
+
+	// A few insertions, deletions and substitutions, so that scores land near the thresholds
+	private static String edit(Random random, String name) {
+		StringBuilder edited = new StringBuilder(name);
+		int edits = random.nextInt(4);
+		for (int i = 0; i < edits; i++) {
+			int position = random.nextInt(edited.length() + 1);
+			switch (random.nextInt(3)) {
+				case 0 -> edited.insert(position, (char) ('a' + random.nextInt(4)));
+				case 1 -> {
+					if (position < edited.length()) {
+						edited.deleteCharAt(position);
+					}
+				}
+				default -> {
+					if (position < edited.length()) {
+						edited.setCharAt(position, (char) ('a' + random.nextInt(4)));
+					}
+				}
+			}
+		}
+		return edited.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CarriedRulesTests {
+
+	private static final String SOURCE = """
+			{"id": 1, "customer": {"fullName": "Ada", "mail": "ada@example.com"}}
+			""";
+
+	private static final String TARGET = """
+			{"orderId": 1, "client": {"name": "Ada", "email": "ada@example.com"}}
+			""";
+
+	private final SchemaParser schemaParser = new SchemaParser(new ObjectMapper(), ArrayInference.FIRST, 0,
+			new MappingMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()));
+
+	private final SchemaFingerprint fingerprints = new SchemaFingerprint();
+
+	@Test
+	void splitsLockstepRulesByObjectPair() throws Exception {
+		JsonNode source = schemaParser.parse(SOURCE);
+		JsonNode target = schemaParser.parse(TARGET);
+
+		Map<MappingResultCache.Key, List<MappingRule>> carried = CarriedRules.index(previousRules(), source, target,
+				fingerprints);
+
+		assertThat(carried).hasSize(2);
+		assertThat(paths(carried.get(fingerprints.key(source, target))))
+				.containsExactly("id -> orderId", "customer.fullName -> client.name", "customer.mail -> client.email");
+		// Relative to the pair they were generated under
+		assertThat(paths(carried.get(fingerprints.key(child(source, "customer"), child(target, "client")))))
+				.containsExactly("fullName -> name", "mail -> email");
+	}
+
+	@Test
+	void returnsNothingForRulesThatAreNotLockstep() throws Exception {
+		JsonNode source = schemaParser.parse(SOURCE);
+		JsonNode target = schemaParser.parse(TARGET);
+		List<MappingRule> rules = previousRules();
+		rules.add(rule("customer.fullName", "orderId"));
+
+		assertThat(CarriedRules.index(rules, source, target, fingerprints)).isEmpty();
+	}
+
+	@Test
+	void returnsNothingForRulesOutsideTheOldSchemas() throws Exception {
+		JsonNode source = schemaParser.parse(SOURCE);
+		JsonNode target = schemaParser.parse(TARGET);
+		List<MappingRule> rules = previousRules();
+		rules.add(rule("customer.phone", "client.phone"));
+
+		assertThat(CarriedRules.index(rules, source, target, fingerprints)).isEmpty();
+	}
+
+	@Test
+	void returnsNothingForMissingInput() throws Exception {
+		JsonNode source = schemaParser.parse(SOURCE);
+		JsonNode target = schemaParser.parse(TARGET);
+		List<MappingRule> rules = previousRules();
+		rules.add(rule(null, "client.phone"));
+
+		assertThat(CarriedRules.index(rules, source, target, fingerprints)).isEmpty();
+		assertThat(CarriedRules.index(null, source, target, fingerprints)).isEmpty();
+		assertThat(CarriedRules.index(previousRules(), null, target, fingerprints)).isEmpty();
+		assertThat(CarriedRules.index(previousRules(), source, null, fingerprints)).isEmpty();
+	}
+
+	@Test
+	void carriesUnchangedSubtreesForwardAfterARename() throws Exception {
+		Map<MappingResultCache.Key, List<MappingRule>> carried = CarriedRules.index(previousRules(),
+				schemaParser.parse(SOURCE), schemaParser.parse(TARGET), fingerprints);
+
+		// The customer object was renamed and a field was added next to it
+		JsonNode source = schemaParser.parse("""
+				{"id": 1, "buyer": {"fullName": "Ada", "mail": "ada@example.com"}, "total": 9.5}
+				""");
+		JsonNode target = schemaParser.parse(TARGET);
+
+		assertThat(carried.get(fingerprints.key(source, target))).isNull();
+		assertThat(paths(carried.get(fingerprints.key(child(source, "buyer"), child(target, "client")))))
+				.containsExactly("fullName -> name", "mail -> email");
+	}
+
+	private static List<MappingRule> previousRules() {
+		List<MappingRule> rules = new ArrayList<>();
+		rules.add(rule("id", "orderId"));
+		rules.add(rule("customer.fullName", "client.name"));
+		rules.add(rule("customer.mail", "client.email"));
+		return rules;
+	}
+
+	private static MappingRule rule(String sourcePath, String targetPath) {
+		MappingRule rule = new MappingRule();
+		rule.setSourcePath(sourcePath);
+		rule.setTargetPath(targetPath);
+		rule.setTransformation("direct");
+		rule.setConfidenceScore(0.9);
+		return rule;
+	}
+
+	private static JsonNode child(JsonNode parent, String name) {
+		return parent.getChildren().stream().filter(child -> child.getName().equals(name)).findFirst().orElseThrow();
+	}
+
+	private static List<String> paths(List<MappingRule> rules) {
+		return rules.stream().map(rule -> rule.getSourcePath() + " -> " + rule.getTargetPath()).toList();
+	}
+}
@@ -0,0 +1,70 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmbeddingMatcherTests {
+
+	private final MappingMetrics metrics = new MappingMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+
+	private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+
+	private final EmbeddingMatcher matcher = new EmbeddingMatcher(embeddingModel, metrics, 64, 0.75, false, 100);
+
+	@Test
+	void returnsPartialMatchesWhenTheModelFails() {
+		when(embeddingModel.embed(anyList())).thenThrow(new IllegalStateException("connection refused"));
+
+		FieldMatches matches = matcher.findMatches(List.of(field("fullName")), List.of(field("name")));
+
+		assertThat(matches.matches()).isEmpty();
+		assertThat(matches.complete()).isFalse();
+	}
+
+	@Test
+	void keepsGroupsWithNothingToEmbedComplete() {
+		when(embeddingModel.embed(anyList())).thenThrow(new IllegalStateException("connection refused"));
+
+		List<FieldMatches> matches = matcher.findMatchesBatch(List.of(
+				new FieldGroup(List.of(field("fullName")), List.of(field("name"))),
+				new FieldGroup(List.of(), List.of(field("email")))));
+
+		assertThat(matches.get(0).complete()).isFalse();
+		assertThat(matches.get(1).complete()).isTrue();
+		assertThat(matches.get(1).matches()).isEmpty();
+	}
+
+	@Test
+	void fallsBackToSimilarityMatchingWhenTheModelFails() {
+		when(embeddingModel.embed(anyList())).thenThrow(new IllegalStateException("connection refused"));
+		EnhancedSimilarityService similarityService = new EnhancedSimilarityService(null, matcher,
+				new SynonymStore(new ObjectMapper(), "", 0.8), new BoundedLevenshteinScorer(), metrics,
+				SemanticMatching.EMBEDDING, 10000, 64, 16);
+
+		FieldMatches matches = similarityService.findBestMatches(
+				List.of(field("id"), field("full_name")), List.of(field("id"), field("fullName")));
+
+		assertThat(matches.matches()).containsEntry("id", "id");
+		assertThat(matches.matches()).containsEntry("full_name", "fullName");
+		// Not complete, so the result is not cached and the next request embeds again
+		assertThat(matches.complete()).isFalse();
+	}
+
+	private static JsonNode field(String name) {
+		JsonNode field = new JsonNode();
+		field.setName(name);
+		field.setType("string");
+		return field;
+	}
+}
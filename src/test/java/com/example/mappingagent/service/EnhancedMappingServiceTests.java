@@ -0,0 +1,234 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingConfiguration;
+import com.example.mappingagent.model.MappingRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnhancedMappingServiceTests {
+
+	private static final String SOURCE = """
+			{"id": 1, "customer": {"fullName": "Ada", "mail": "ada@example.com"}}
+			""";
+
+	private static final String TARGET = """
+			{"id": 1, "customer": {"name": "Ada", "email": "ada@example.com"}}
+			""";
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	private final MappingMetrics metrics = new MappingMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+
+	private final MappingResultCache resultCache = new MappingResultCache(DataSize.ofMegabytes(1));
+
+	private final SynonymStore synonymStore = new SynonymStore(new ObjectMapper(), "", 0.8);
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void cachesSubtreesWhoseLookupsFinished() throws Exception {
+		CountingLlm llm = new CountingLlm(true);
+		EnhancedMappingService service = service(llm, TraversalMode.SEQUENTIAL);
+
+		MappingConfiguration first = service.generateMapping(parse(SOURCE), parse(TARGET));
+		MappingConfiguration second = service.generateMapping(parse(SOURCE), parse(TARGET));
+
+		assertThat(llm.calls.get()).isEqualTo(1);
+		assertThat(paths(second)).isEqualTo(paths(first));
+		assertThat(resultCache.stats().size()).isEqualTo(2);
+	}
+
+	@Test
+	void streamingCachesEveryPair() throws Exception {
+		CountingLlm llm = new CountingLlm(true);
+		EnhancedMappingService service = service(llm, TraversalMode.SEQUENTIAL);
+		List<String> streamed = new ArrayList<>();
+
+		service.streamMapping(parse(SOURCE), parse(TARGET), rule -> streamed.add(rule.getTargetPath()));
+		MappingConfiguration replayed = service.generateMapping(parse(SOURCE), parse(TARGET));
+
+		assertThat(streamed).hasSize(3);
+		// The root entry only refers to the customer pair's entry instead of holding a copy of its rules
+		assertThat(resultCache.stats().size()).isEqualTo(2);
+		assertThat(llm.calls.get()).isEqualTo(1);
+		assertThat(replayed.getRules().stream().map(rule -> rule.getTargetPath()).toList()).isEqualTo(streamed);
+	}
+
+	@Test
+	void replaysNestedPairsFromTheirOwnEntries() throws Exception {
+		String source = """
+				{"order": {"customer": {"fullName": "Ada", "mail": "ada@example.com"}}, "id": 1}
+				""";
+		String target = """
+				{"order": {"customer": {"name": "Ada", "email": "ada@example.com"}}, "id": 1}
+				""";
+		CountingLlm llm = new CountingLlm(true);
+		EnhancedMappingService service = service(llm, TraversalMode.SEQUENTIAL);
+
+		MappingConfiguration first = service.generateMapping(parse(source), parse(target));
+		// The customer pair alone, matched again inside the nested schema
+		MappingConfiguration inner = service.generateMapping(parse(SOURCE), parse(TARGET));
+		MappingConfiguration second = service.generateMapping(parse(source), parse(target));
+
+		assertThat(paths(first)).containsOnly("id -> id", "order.customer.fullName -> order.customer.name",
+				"order.customer.mail -> order.customer.email");
+		assertThat(paths(second)).isEqualTo(paths(first));
+		assertThat(paths(inner)).containsOnly("id -> id", "customer.fullName -> customer.name",
+				"customer.mail -> customer.email");
+		assertThat(llm.calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	void doesNotCacheSubtreesAfterATimedOutLookup() throws Exception {
+		CountingLlm llm = new CountingLlm(false);
+		EnhancedMappingService service = service(llm, TraversalMode.SEQUENTIAL);
+
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+
+		// Neither the customer pair nor the root above it was cached, so the model is asked again
+		assertThat(llm.calls.get()).isEqualTo(2);
+		assertThat(resultCache.stats().size()).isEqualTo(0);
+	}
+
+	@Test
+	void doesNotCacheTheSchemaAfterATimedOutLookupInConcurrentMode() throws Exception {
+		CountingLlm llm = new CountingLlm(false);
+		EnhancedMappingService service = service(llm, TraversalMode.CONCURRENT);
+
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+
+		assertThat(llm.calls.get()).isEqualTo(2);
+		assertThat(resultCache.stats().size()).isEqualTo(0);
+	}
+
+	@Test
+	void doesNotCacheSubtreesAfterAnUnparseableBatch() throws Exception {
+		CountingLlm llm = new CountingLlm(false);
+		EnhancedMappingService service = service(llm, TraversalMode.BATCHED);
+
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+
+		assertThat(llm.calls.get()).isEqualTo(2);
+		assertThat(resultCache.stats().size()).isEqualTo(0);
+	}
+
+	@Test
+	void remapsEverythingWithoutAPreviousMapping() throws Exception {
+		CountingLlm llm = new CountingLlm(true);
+		EnhancedMappingService service = service(llm, TraversalMode.SEQUENTIAL);
+
+		MappingConfiguration remapped = service.remapMapping(null, null, null, parse(SOURCE), parse(TARGET));
+
+		assertThat(paths(remapped)).containsOnly("id -> id", "customer.fullName -> customer.name",
+				"customer.mail -> customer.email");
+	}
+
+	@Test
+	void dropsCachedRulesWhenAnAcceptedMappingChangesTheSynonyms() throws Exception {
+		EnhancedMappingService service = service(new CountingLlm(true), TraversalMode.SEQUENTIAL);
+		MappingConfiguration accepted = configuration(
+				rule("customer.fullName", "customer.name"), rule("customer.mail", "customer.email"));
+
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+		assertThat(service.acceptMapping(accepted)).isEqualTo(2);
+		assertThat(resultCache.stats().size()).isEqualTo(0);
+
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+		assertThat(resultCache.stats().size()).isEqualTo(2);
+		// Nothing new, but the pairs were accepted once more
+		assertThat(service.acceptMapping(accepted)).isEqualTo(0);
+		assertThat(resultCache.stats().size()).isEqualTo(0);
+
+		// Rules between equal names teach nothing, so the cache is kept
+		service.generateMapping(parse(SOURCE), parse(TARGET));
+		assertThat(service.acceptMapping(configuration(rule("id", "id")))).isEqualTo(0);
+		assertThat(resultCache.stats().size()).isEqualTo(2);
+	}
+
+	private EnhancedMappingService service(LLMService llm, TraversalMode mode) {
+		EnhancedSimilarityService similarityService = new EnhancedSimilarityService(llm, null,
+				synonymStore, new BoundedLevenshteinScorer(), metrics,
+				SemanticMatching.LLM, 10000, 64, 16);
+		return new EnhancedMappingService(similarityService, schemaParser(), mode, executor, resultCache,
+				synonymStore, metrics);
+	}
+
+	private SchemaParser schemaParser() {
+		return new SchemaParser(new ObjectMapper(), ArrayInference.FIRST, 0, metrics);
+	}
+
+	private JsonNode parse(String json) throws Exception {
+		return schemaParser().parse(json);
+	}
+
+	private static MappingConfiguration configuration(MappingRule... rules) {
+		MappingConfiguration configuration = new MappingConfiguration();
+		configuration.setRules(List.of(rules));
+		return configuration;
+	}
+
+	private static MappingRule rule(String sourcePath, String targetPath) {
+		MappingRule rule = new MappingRule();
+		rule.setSourcePath(sourcePath);
+		rule.setTargetPath(targetPath);
+		rule.setConfidenceScore(1.0);
+		return rule;
+	}
+
+	private static List<String> paths(MappingConfiguration configuration) {
+		return configuration.getRules().stream()
+				.map(rule -> rule.getSourcePath() + " -> " + rule.getTargetPath())
+				.toList();
+	}
+
+	// Matches fullName and mail by name; a lookup that did not finish still returns what it found
+	private static final class CountingLlm extends LLMService {
+
+		private final boolean finishes;
+
+		private final AtomicInteger calls = new AtomicInteger();
+
+		CountingLlm(boolean finishes) {
+			super(Mockito.mock(ChatClient.Builder.class), null, new ObjectMapper(),
+					new MappingMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()), null, 20, 400);
+			this.finishes = finishes;
+		}
+
+		@Override
+		public FieldMatches findSemanticMatches(List<JsonNode> sourceFields, List<JsonNode> targetFields) {
+			if (sourceFields.isEmpty() || targetFields.isEmpty()) {
+				return FieldMatches.of(Map.of());
+			}
+			calls.incrementAndGet();
+			Map<String, String> matches = Map.of("fullName", "name", "mail", "email");
+			return new FieldMatches(matches, finishes);
+		}
+
+		@Override
+		public List<FieldMatches> findSemanticMatchesBatch(List<FieldGroup> groups) {
+			return groups.stream().map(group -> findSemanticMatches(group.sourceFields(), group.targetFields())).toList();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldIndexTests {
+
+	private static final String[] WORDS = {
+			"customer", "order", "shipping", "billing", "address", "line", "city", "postal", "code", "country",
+			"first", "last", "name", "email", "phone", "number", "created", "updated", "at", "id", "total", "amount",
+			"tax", "currency", "item", "quantity", "price", "status", "date", "discount"};
+
+	// The lowest name similarity that can still pass the 0.6 combined threshold, with matching types
+	private static final double MIN_NAME_SIMILARITY = (0.6 - 0.3) / 0.7;
+
+	private final BoundedLevenshteinScorer scorer = new BoundedLevenshteinScorer();
+
+	@Test
+	void ranksFieldsByWhatTheyShareWithTheName() {
+		FieldIndex index = new FieldIndex(fields("shippingAddress", "billing_address", "city", "SHIPPING_CITY"));
+
+		assertThat(names(index, index.candidates("shipping_address", 16)))
+				.containsExactly("shippingAddress", "billing_address", "SHIPPING_CITY");
+		assertThat(names(index, index.candidates("shippingAddress", 2)))
+				.containsExactly("shippingAddress", "billing_address");
+		assertThat(index.candidates("zzz", 16)).isEmpty();
+		assertThat(index.candidates("", 16)).isEmpty();
+	}
+
+	@Test
+	void findsShortNamesWithATypo() {
+		FieldIndex index = new FieldIndex(fields("id", "at", "tax", "sku", "amount", "last", "first"));
+
+		// Neither pair shares a trigram, only the first or last character
+		assertThat(names(index, index.candidates("iq", 1))).containsExactly("id");
+		assertThat(names(index, index.candidates("sxu", 1))).containsExactly("sku");
+		assertThat(names(index, index.candidates("qt", 1))).containsExactly("at");
+	}
+
+	@Test
+	void keepsTheBestScoringFieldAmongTheTopCandidates() {
+		Random random = new Random(11);
+		int checked = 0;
+		for (int round = 0; round < 50; round++) {
+			// As wide as the lists the index is used for, and wider
+			List<List<String>> combinations = combinations(random, 64 + random.nextInt(200));
+			List<JsonNode> targets = new ArrayList<>();
+			for (List<String> words : combinations) {
+				targets.add(field(style(words, random.nextInt(3))));
+			}
+			FieldIndex index = new FieldIndex(targets);
+
+			for (int i = 0; i < 40; i++) {
+				String name = typo(random, style(combinations.get(random.nextInt(combinations.size())), random.nextInt(3)));
+				char[] normalized = FieldNames.normalize(name).toCharArray();
+				double best = 0.0;
+				for (int j = 0; j < index.size(); j++) {
+					best = Math.max(best, scorer.similarity(normalized, index.normalizedName(j)));
+				}
+				if (best < MIN_NAME_SIMILARITY) {
+					continue;
+				}
+
+				double bestCandidate = 0.0;
+				for (int j : index.candidates(name, 16)) {
+					bestCandidate = Math.max(bestCandidate, scorer.similarity(normalized, index.normalizedName(j)));
+				}
+				assertThat(bestCandidate).as(name).isEqualTo(best);
+				checked++;
+			}
+		}
+		assertThat(checked).isGreaterThan(1000);
+	}
+
+	private static List<List<String>> combinations(Random random, int count) {
+		List<List<String>> combinations = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		while (combinations.size() < count) {
+			List<String> words = new ArrayList<>();
+			int length = 1 + random.nextInt(3);
+			for (int i = 0; i < length; i++) {
+				words.add(WORDS[random.nextInt(WORDS.length)]);
+			}
+			if (seen.add(String.join("", words))) {
+				combinations.add(words);
+			}
+		}
+		return combinations;
+	}
+
+	// camelCase, snake_case or SCREAMING_SNAKE_CASE
+	private static String style(List<String> words, int style) {
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < words.size(); i++) {
+			String word = words.get(i);
+			if (style == 0) {
+				name.append(i == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+			} else {
+				if (i > 0) {
+					name.append('_');
+				}
+				name.append(style == 1 ? word : word.toUpperCase());
+			}
+		}
+		return name.toString();
+	}
+
+	private static String typo(Random random, String name) {
+		if (random.nextBoolean()) {
+			return name;
+		}
+		StringBuilder typo = new StringBuilder(name);
+		typo.setCharAt(random.nextInt(typo.length()), 'q');
+		return typo.toString();
+	}
+
+	private static List<JsonNode> fields(String... names) {
+		List<JsonNode> fields = new ArrayList<>();
+		for (String name : names) {
+			fields.add(field(name));
+		}
+		return fields;
+	}
+
+	private static JsonNode field(String name) {
+		JsonNode field = new JsonNode();
+		field.setName(name);
+		field.setType("string");
+		return field;
+	}
+
+	private static List<String> names(FieldIndex index, int[] candidates) {
+		List<String> names = new ArrayList<>();
+		for (int candidate : candidates) {
+			names.add(index.field(candidate).getName());
+		}
+		return names;
+	}
+}
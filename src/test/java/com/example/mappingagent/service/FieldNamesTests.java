@@ -0,0 +1,69 @@
+package com.example.mappingagent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldNamesTests {
+
+	@Test
+	void normalizesLikeTheStringReplacements() {
+		Random random = new Random(3);
+		String alphabet = "aZ_- 09.$xYq\u00C4\u00DF\u0130";
+		for (int i = 0; i < 10000; i++) {
+			StringBuilder name = new StringBuilder();
+			int length = random.nextInt(12);
+			for (int j = 0; j < length; j++) {
+				// Mostly ASCII, so both the fast path and the fallback are exercised
+				name.append(alphabet.charAt(random.nextInt(random.nextInt(4) == 0 ? alphabet.length() : 12)));
+			}
+
+			assertThat(FieldNames.normalize(name.toString())).as(name.toString())
+					.isEqualTo(name.toString().toLowerCase().replace("_", "").replace("-", "").replace(" ", ""));
+		}
+	}
+
+	@Test
+	void normalizesCaseAndSeparatorVariantsToOneName() {
+		assertThat(FieldNames.normalize("postalCode")).isEqualTo("postalcode");
+		assertThat(FieldNames.normalize("postal_code")).isEqualTo("postalcode");
+		assertThat(FieldNames.normalize("POSTAL-CODE")).isEqualTo("postalcode");
+		assertThat(FieldNames.normalize("Postal Code")).isEqualTo("postalcode");
+		assertThat(FieldNames.normalize("")).isEqualTo("");
+		assertThat(FieldNames.normalize("___")).isEqualTo("");
+	}
+
+	@Test
+	void returnsNormalizedNamesUnchanged() {
+		String name = "postalcode2";
+
+		assertThat(FieldNames.normalize(name)).isSameAs(name);
+	}
+
+	@Test
+	void splitsCamelCaseNames() {
+		assertThat(FieldNames.tokens("shippingAddress")).containsExactly("shipping", "address");
+		assertThat(FieldNames.tokens("ShippingAddress")).containsExactly("shipping", "address");
+		assertThat(FieldNames.tokens("HTTPServerURL")).containsExactly("http", "server", "url");
+		assertThat(FieldNames.tokens("userID")).containsExactly("user", "id");
+		assertThat(FieldNames.tokens("address2Line")).containsExactly("address2", "line");
+		assertThat(FieldNames.tokens("iOS")).containsExactly("i", "os");
+	}
+
+	@Test
+	void splitsSnakeKebabAndSpacedNames() {
+		assertThat(FieldNames.tokens("postal_code")).containsExactly("postal", "code");
+		assertThat(FieldNames.tokens("POSTAL_CODE")).containsExactly("postal", "code");
+		assertThat(FieldNames.tokens("postal-code name")).containsExactly("postal", "code", "name");
+		assertThat(FieldNames.tokens("shippingAddress_ID")).containsExactly("shipping", "address", "id");
+		assertThat(FieldNames.tokens("__x__")).containsExactly("x");
+		assertThat(FieldNames.tokens("")).isEmpty();
+	}
+
+	@Test
+	void splitsNonAsciiNames() {
+		assertThat(FieldNames.tokens("\u00C4pfel\u00D6l")).containsExactly("\u00E4pfel", "\u00F6l");
+	}
+}
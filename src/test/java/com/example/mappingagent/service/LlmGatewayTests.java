@@ -0,0 +1,196 @@
+package com.example.mappingagent.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class LlmGatewayTests {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void shutDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void growsTheLimitOnlyWhileSaturated() {
+		LlmGateway gateway = new LlmGateway(2, 1, 4, 2.0, 0.5, Duration.ofSeconds(1));
+
+		LlmGateway.Permit first = gateway.acquire(LlmPriority.BULK);
+		LlmGateway.Permit second = gateway.acquire(LlmPriority.BULK);
+		// Both permits taken: a fast answer adds 1/limit
+		first.answered(FAST);
+		assertThat(gateway.stats().limit()).isEqualTo(2.5);
+		// One of 2.5 permits taken: not saturated, so no growth
+		second.answered(FAST);
+		assertThat(gateway.stats().limit()).isEqualTo(2.5);
+		assertThat(gateway.stats().inFlight()).isEqualTo(0);
+	}
+
+	@Test
+	void backsOffOnSlowAnswersAndDrops() {
+		LlmGateway gateway = new LlmGateway(4, 1, 16, 2.0, 0.5, Duration.ofSeconds(1));
+
+		gateway.acquire(LlmPriority.BULK).answered(FAST);
+		assertThat(gateway.stats().limit()).isEqualTo(4.0);
+
+		// Far beyond twice the fastest first token seen
+		gateway.acquire(LlmPriority.BULK).answered(10 * FAST);
+		assertThat(gateway.stats().limit()).isEqualTo(2.0);
+
+		gateway.acquire(LlmPriority.BULK).dropped();
+		assertThat(gateway.stats().limit()).isEqualTo(1.0);
+
+		// Never below the minimum
+		gateway.acquire(LlmPriority.BULK).dropped();
+		assertThat(gateway.stats().limit()).isEqualTo(1.0);
+	}
+
+	@Test
+	void releaseFreesThePermitWithoutMovingTheLimit() {
+		LlmGateway gateway = new LlmGateway(2, 1, 4, 2.0, 0.5, Duration.ofSeconds(1));
+
+		LlmGateway.Permit first = gateway.acquire(LlmPriority.BULK);
+		gateway.acquire(LlmPriority.BULK).release();
+		first.release();
+		// Giving a permit back twice does not free a second slot
+		first.dropped();
+
+		assertThat(gateway.stats().limit()).isEqualTo(2.0);
+		assertThat(gateway.stats().inFlight()).isEqualTo(0);
+	}
+
+	@Test
+	void letsInteractiveCallsOvertakeBulkWaiters() throws Exception {
+		LlmGateway gateway = new LlmGateway(1, 1, 1, 2.0, 0.5, Duration.ofSeconds(10));
+		LlmGateway.Permit held = gateway.acquire(LlmPriority.BULK);
+		List<LlmPriority> order = Collections.synchronizedList(new ArrayList<>());
+
+		Future<?> bulk = executor.submit(() -> takeTurn(gateway, LlmPriority.BULK, order));
+		awaitUntil(() -> gateway.stats().bulkQueued() == 1);
+		Future<?> interactive = executor.submit(() -> takeTurn(gateway, LlmPriority.INTERACTIVE, order));
+		awaitUntil(() -> gateway.stats().interactiveQueued() == 1);
+
+		held.release();
+		bulk.get(5, TimeUnit.SECONDS);
+		interactive.get(5, TimeUnit.SECONDS);
+
+		assertThat(order).containsExactly(LlmPriority.INTERACTIVE, LlmPriority.BULK);
+	}
+
+	@Test
+	void returnsNullWhenNoPermitFreesUpInTime() {
+		LlmGateway gateway = new LlmGateway(1, 1, 1, 2.0, 0.5, Duration.ofMillis(50));
+		gateway.acquire(LlmPriority.BULK);
+
+		assertThat(gateway.acquire(LlmPriority.INTERACTIVE)).isNull();
+		assertThat(gateway.stats().rejected()).isEqualTo(1L);
+		assertThat(gateway.stats().interactiveQueued()).isEqualTo(0);
+	}
+
+	@Test
+	void coalescesConcurrentCallsIntoOne() throws Exception {
+		LlmGateway gateway = new LlmGateway(4, 1, 16, 2.0, 0.5, Duration.ofSeconds(1));
+		CountDownLatch answer = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			results.add(executor.submit(() -> gateway.coalesce("prompt", () -> {
+				calls.incrementAndGet();
+				await(answer);
+				return "answer";
+			})));
+		}
+		awaitUntil(() -> gateway.stats().coalesced() == 4);
+		answer.countDown();
+
+		for (Future<String> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+		}
+		assertThat(calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	void sharesTheExceptionOfACoalescedCall() throws Exception {
+		LlmGateway gateway = new LlmGateway(4, 1, 16, 2.0, 0.5, Duration.ofSeconds(1));
+		CountDownLatch fail = new CountDownLatch(1);
+		IllegalStateException failure = new IllegalStateException("model down");
+
+		List<Future<Throwable>> results = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			results.add(executor.submit(() -> catchThrowable(() -> gateway.coalesce("prompt", () -> {
+				await(fail);
+				throw failure;
+			}))));
+		}
+		awaitUntil(() -> gateway.stats().coalesced() == 2);
+		fail.countDown();
+
+		for (Future<Throwable> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(failure);
+		}
+	}
+
+	@Test
+	void sharesErrorsInsteadOfLeavingFollowersWaiting() throws Exception {
+		LlmGateway gateway = new LlmGateway(4, 1, 16, 2.0, 0.5, Duration.ofSeconds(1));
+		CountDownLatch fail = new CountDownLatch(1);
+		StackOverflowError failure = new StackOverflowError();
+
+		List<Future<Throwable>> results = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			results.add(executor.submit(() -> catchThrowable(() -> gateway.coalesce("prompt", () -> {
+				await(fail);
+				throw failure;
+			}))));
+		}
+		awaitUntil(() -> gateway.stats().coalesced() == 1);
+		fail.countDown();
+
+		for (Future<Throwable> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(failure);
+		}
+	}
+
+	private static void takeTurn(LlmGateway gateway, LlmPriority priority, List<LlmPriority> order) {
+		LlmGateway.Permit permit = gateway.acquire(priority);
+		order.add(priority);
+		permit.release();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				throw new AssertionError("Condition not met in time");
+			}
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JobStatus;
+import com.example.mappingagent.model.MappingJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappingJobStoreTests {
+
+	private final MappingJobStore store = new MappingJobStore(new ObjectMapper(), "", Duration.ofHours(1));
+
+	@Test
+	void doesNotReturnFinishedJobsPastRetention() {
+		store.save(job("old", JobStatus.SUCCEEDED, Instant.now().minus(Duration.ofHours(2))));
+		store.save(job("recent", JobStatus.SUCCEEDED, Instant.now()));
+
+		assertThat(store.get("old")).isNull();
+		assertThat(store.get("recent")).isNotNull();
+	}
+
+	@Test
+	void keepsUnfinishedJobsRegardlessOfAge() {
+		store.save(job("queued", JobStatus.QUEUED, null));
+
+		assertThat(store.get("queued")).isNotNull();
+	}
+
+	private static MappingJob job(String id, JobStatus status, Instant finishedAt) {
+		MappingJob job = new MappingJob();
+		job.setId(id);
+		job.setStatus(status);
+		job.setSubmittedAt(Instant.now().minus(Duration.ofDays(1)));
+		job.setFinishedAt(finishedAt);
+		return job;
+	}
+}
@@ -0,0 +1,61 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.MappingRule;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappingResultCacheTests {
+
+	private static final MappingResultCache.Key ROOT = new MappingResultCache.Key(1, 1);
+	private static final MappingResultCache.Key CUSTOMER = new MappingResultCache.Key(2, 2);
+	private static final MappingResultCache.Key ADDRESS = new MappingResultCache.Key(3, 3);
+
+	private final MappingResultCache cache = new MappingResultCache(DataSize.ofMegabytes(1));
+
+	@Test
+	void assemblesRulesFromChildEntriesInOrder() {
+		cache.put(ADDRESS, List.of(rule("street", "line1")));
+		cache.putParts(CUSTOMER, List.of(
+				MappingResultCache.Part.of(rule("fullName", "name")),
+				MappingResultCache.Part.child("address", "postal", ADDRESS)));
+		cache.putParts(ROOT, List.of(
+				MappingResultCache.Part.child("customer", "client", CUSTOMER),
+				MappingResultCache.Part.of(rule("id", "orderId"))));
+
+		assertThat(paths(cache.get(ROOT))).containsExactly(
+				"customer.fullName -> client.name",
+				"customer.address.street -> client.postal.line1",
+				"id -> orderId");
+		assertThat(paths(cache.get(CUSTOMER))).containsExactly(
+				"fullName -> name",
+				"address.street -> postal.line1");
+	}
+
+	@Test
+	void missesPairsWhoseChildEntryIsGone() {
+		cache.putParts(ROOT, List.of(
+				MappingResultCache.Part.of(rule("id", "orderId")),
+				MappingResultCache.Part.child("customer", "client", CUSTOMER)));
+
+		assertThat(cache.contains(ROOT)).isFalse();
+		assertThat(cache.get(ROOT)).isNull();
+		assertThat(cache.stats().misses()).isEqualTo(1L);
+	}
+
+	private static MappingRule rule(String sourcePath, String targetPath) {
+		MappingRule rule = new MappingRule();
+		rule.setSourcePath(sourcePath);
+		rule.setTargetPath(targetPath);
+		rule.setTransformation("direct");
+		rule.setConfidenceScore(0.9);
+		return rule;
+	}
+
+	private static List<String> paths(List<MappingRule> rules) {
+		return rules.stream().map(rule -> rule.getSourcePath() + " -> " + rule.getTargetPath()).toList();
+	}
+}
@@ -0,0 +1,236 @@
+package com.example.mappingagent.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaBackendPoolTests {
+
+	private final List<StandIn> standIns = new ArrayList<>();
+
+	@AfterEach
+	void stopStandIns() {
+		standIns.forEach(standIn -> standIn.server.stop(0));
+	}
+
+	@Test
+	void sendsARepeatedPromptToTheSameNode() throws Exception {
+		OllamaBackendPool pool = pool(standIn(), standIn(), standIn());
+		RestClient client = client(pool);
+
+		Set<String> answering = new HashSet<>();
+		for (int i = 0; i < 30; i++) {
+			String first = chat(client, pool, "prompt " + i);
+			String second = chat(client, pool, "prompt " + i);
+
+			assertThat(second).isEqualTo(first);
+			answering.add(first);
+		}
+		// The ring spreads distinct prompts over every node
+		assertThat(answering).hasSize(3);
+	}
+
+	@Test
+	void walksTheRingPastANodeWithMoreThanItsShare() throws Exception {
+		OllamaBackendPool pool = pool(standIn(), standIn(), standIn());
+		OllamaBackendPool.Node owner = pool.select("prompt", List.of());
+
+		// With one request outstanding, the next may take ceil(1.25 * 2 / 3) = 1 per node
+		OllamaBackendPool.Call first = owner.begin();
+		OllamaBackendPool.Node fallback = pool.select("prompt", List.of());
+		assertThat(fallback).isNotSameAs(owner);
+
+		// With two outstanding, two per node, so the owner takes the prompt again
+		OllamaBackendPool.Call second = fallback.begin();
+		assertThat(pool.select("prompt", List.of())).isSameAs(owner);
+
+		first.end();
+		second.end();
+		assertThat(pool.select("prompt", List.of())).isSameAs(owner);
+	}
+
+	@Test
+	void ejectsANodeAfterMaxFailuresInARow() throws Exception {
+		StandIn failing = standIn();
+		OllamaBackendPool pool = pool(failing, standIn());
+		RestClient client = client(pool);
+		String prompt = promptFor(pool, failing);
+		failing.chatStatus = 500;
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(node(pool, failing).healthy()).isTrue();
+			assertThatThrownBy(() -> chat(client, pool, prompt)).isInstanceOf(HttpServerErrorException.class);
+		}
+
+		assertThat(node(pool, failing).healthy()).isFalse();
+		assertThat(chat(client, pool, prompt)).isEqualTo(pool.nodes().get(1).name());
+		assertThat(failing.chats.get()).isEqualTo(3);
+	}
+
+	@Test
+	void readmitsAnEjectedNodeOnceItsHealthCheckPasses() throws Exception {
+		StandIn failing = standIn();
+		OllamaBackendPool pool = pool(failing, standIn());
+		RestClient client = client(pool);
+		String prompt = promptFor(pool, failing);
+		failing.chatStatus = 500;
+		failing.tagsStatus = 503;
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> chat(client, pool, prompt)).isInstanceOf(HttpServerErrorException.class);
+		}
+
+		pool.checkHealth();
+		assertThat(node(pool, failing).healthy()).isFalse();
+
+		failing.chatStatus = 200;
+		failing.tagsStatus = 200;
+		pool.checkHealth();
+		assertThat(node(pool, failing).healthy()).isTrue();
+		assertThat(chat(client, pool, prompt)).isEqualTo(failing.name());
+	}
+
+	@Test
+	void retriesARefusedConnectionOnAnotherNode() throws Exception {
+		String refused = "http://127.0.0.1:" + unusedPort();
+		StandIn live = standIn();
+		OllamaBackendPool pool = new OllamaBackendPool(refused + "," + live.name(), 1.25, 3,
+				Duration.ofSeconds(10), Duration.ofSeconds(1));
+		RestClient client = client(pool);
+		List<String> prompts = new ArrayList<>();
+		for (int i = 0; prompts.size() < 3; i++) {
+			if (pool.select("prompt " + i, List.of()) == pool.nodes().get(0)) {
+				prompts.add("prompt " + i);
+			}
+		}
+
+		for (String prompt : prompts) {
+			assertThat(chat(client, pool, prompt)).isEqualTo(live.name());
+		}
+
+		assertThat(live.chats.get()).isEqualTo(3);
+		// Refused connections count as failures too
+		assertThat(pool.nodes().get(0).healthy()).isFalse();
+	}
+
+	@Test
+	void keepsCheckingTheOtherNodesWhenOneCheckThrows() throws Exception {
+		StandIn live = standIn();
+		// No http scheme, so the health check request cannot even be built
+		OllamaBackendPool pool = new OllamaBackendPool("localhost:1," + live.name(), 1.25, 3,
+				Duration.ofSeconds(10), Duration.ofSeconds(1));
+		OllamaBackendPool.Node node = node(pool, live);
+		for (int i = 0; i < 3; i++) {
+			node.record(-1);
+		}
+		assertThat(node.healthy()).isFalse();
+
+		pool.checkHealth();
+
+		assertThat(node.healthy()).isTrue();
+		assertThat(live.tags.get()).isEqualTo(1);
+	}
+
+	private static OllamaBackendPool pool(StandIn... nodes) {
+		String urls = Arrays.stream(nodes).map(StandIn::name).collect(Collectors.joining(","));
+		return new OllamaBackendPool(urls, 1.25, 3, Duration.ofSeconds(10), Duration.ofSeconds(1));
+	}
+
+	private static RestClient client(OllamaBackendPool pool) {
+		return RestClient.builder()
+				.requestFactory(new JdkClientHttpRequestFactory())
+				.requestInterceptor(pool::route)
+				.build();
+	}
+
+	// The stand-ins answer with their own URL
+	private static String chat(RestClient client, OllamaBackendPool pool, String prompt) {
+		return client.post().uri(pool.baseUrl() + "/api/chat").body(prompt).retrieve().body(String.class);
+	}
+
+	// A prompt that hashes to the node of the stand-in
+	private static String promptFor(OllamaBackendPool pool, StandIn standIn) {
+		OllamaBackendPool.Node node = node(pool, standIn);
+		for (int i = 0; ; i++) {
+			if (pool.select("prompt " + i, List.of()) == node) {
+				return "prompt " + i;
+			}
+		}
+	}
+
+	private static OllamaBackendPool.Node node(OllamaBackendPool pool, StandIn standIn) {
+		return pool.nodes().stream().filter(node -> node.name().equals(standIn.name())).findFirst().orElseThrow();
+	}
+
+	private static int unusedPort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private StandIn standIn() throws IOException {
+		StandIn standIn = new StandIn(HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0));
+		standIn.server.createContext("/api/chat", exchange -> {
+			standIn.chats.incrementAndGet();
+			exchange.getRequestBody().readAllBytes();
+			respond(exchange, standIn.chatStatus, standIn.name());
+		});
+		standIn.server.createContext("/api/tags", exchange -> {
+			standIn.tags.incrementAndGet();
+			respond(exchange, standIn.tagsStatus, "{\"models\":[]}");
+		});
+		standIn.server.start();
+		standIns.add(standIn);
+		return standIn;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		try (exchange) {
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(status, bytes.length);
+			exchange.getResponseBody().write(bytes);
+		}
+	}
+
+	// One Ollama node: answers chats with its URL, and both endpoints with a status the test can change
+	private static final class StandIn {
+
+		private final HttpServer server;
+
+		private final AtomicInteger chats = new AtomicInteger();
+
+		private final AtomicInteger tags = new AtomicInteger();
+
+		private volatile int chatStatus = 200;
+
+		private volatile int tagsStatus = 200;
+
+		StandIn(HttpServer server) {
+			this.server = server;
+		}
+
+		String name() {
+			return "http://127.0.0.1:" + server.getAddress().getPort();
+		}
+	}
+}
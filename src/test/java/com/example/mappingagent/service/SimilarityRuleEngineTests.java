@@ -0,0 +1,179 @@
+package com.example.mappingagent.service;
+
+import com.example.mappingagent.model.JsonNode;
+import com.example.mappingagent.model.MappingRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimilarityRuleEngineTests {
+
+	private static final String[] NAMES = {
+			"id", "userId", "user_id", "userID", "name", "fullName", "full_name", "email", "mail", "eMail",
+			"address", "addr", "street", "city", "zip", "zipCode", "postal_code", "phone", "telephone", "total",
+			"amount", "items", "item", "date", "created_at", "createdAt", "status", "state", "x", "ab", "a-b c", ""};
+
+	private static final String[] LEAF_TYPES = {"string", "number", "boolean"};
+
+	private final SimilarityService similarityService = new SimilarityService(new BoundedLevenshteinScorer());
+
+	@Test
+	void producesTheRulesOfTheFullSearchOnRandomSchemas() {
+		Random random = new Random(42);
+		for (int i = 0; i < 3000; i++) {
+			JsonNode source = object("root", random, random.nextInt(4));
+			JsonNode target = object("root", random, random.nextInt(4));
+
+			assertSameRules(source, target, "schema pair " + i);
+		}
+	}
+
+	@Test
+	void mapsSixLevelsOfThirtyFieldsQuickly() {
+		JsonNode source = levels("order", "", 6);
+		JsonNode target = levels("order", "_v2", 6);
+
+		long started = System.nanoTime();
+		List<MappingRule> rules = new ArrayList<>();
+		new SimilarityRuleEngine(similarityService, rules).generateRules(source, target, "");
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+		assertSameRules(source, target, "six levels");
+		// Milliseconds in practice; the bound only catches a return to the exponential search
+		assertThat(elapsedMillis).isLessThan(2000L);
+	}
+
+	private void assertSameRules(JsonNode source, JsonNode target, String description) {
+		List<MappingRule> expected = new ArrayList<>();
+		fullSearch(source, target, expected, "");
+		List<MappingRule> actual = new ArrayList<>();
+		new SimilarityRuleEngine(similarityService, actual).generateRules(source, target, "");
+
+		assertThat(paths(actual)).as(description).isEqualTo(paths(expected));
+		for (int i = 0; i < expected.size(); i++) {
+			double difference = actual.get(i).getConfidenceScore() - expected.get(i).getConfidenceScore();
+			assertThat(Math.abs(difference)).as(description).isLessThan(1e-9);
+		}
+	}
+
+	// The recursion the engine replaced: every source/target pair at every level, scored in full
+	private static void fullSearch(JsonNode source, JsonNode target, List<MappingRule> rules, String currentPath) {
+		String sourcePath = currentPath.isEmpty() ? source.getName() : currentPath + "." + source.getName();
+		String targetPath = currentPath.isEmpty() ? target.getName() : currentPath + "." + target.getName();
+
+		double combinedScore = (nameSimilarity(source.getName(), target.getName())
+				+ structureSimilarity(source, target)) / 2;
+		if (combinedScore > 0.4 && rules.stream().noneMatch(rule -> rule.getTargetPath().equals(targetPath))) {
+			MappingRule rule = new MappingRule();
+			rule.setSourcePath(sourcePath);
+			rule.setTargetPath(targetPath);
+			rule.setTransformation("direct");
+			rule.setConfidenceScore(combinedScore);
+			rules.add(rule);
+		}
+
+		if (source.getChildren() != null && target.getChildren() != null) {
+			for (JsonNode sourceChild : source.getChildren()) {
+				for (JsonNode targetChild : target.getChildren()) {
+					fullSearch(sourceChild, targetChild, rules, sourcePath);
+				}
+			}
+		}
+	}
+
+	private static double structureSimilarity(JsonNode node1, JsonNode node2) {
+		if (!node1.getType().equals(node2.getType())) {
+			return 0.0;
+		}
+		if (node1.getChildren() != null && node1.getChildren().isEmpty()
+				&& node2.getChildren() != null && node2.getChildren().isEmpty()) {
+			return 1.0;
+		}
+		Map<String, JsonNode> children2 = new HashMap<>();
+		if (node2.getChildren() != null) {
+			node2.getChildren().forEach(child -> children2.put(child.getName(), child));
+		}
+		double totalScore = 0.0;
+		int comparisons = 0;
+		if (node1.getChildren() != null) {
+			for (JsonNode child : node1.getChildren()) {
+				JsonNode other = children2.get(child.getName());
+				if (other != null) {
+					totalScore += nameSimilarity(child.getName(), child.getName());
+					totalScore += structureSimilarity(child, other);
+					comparisons += 2;
+				}
+			}
+		}
+		return comparisons > 0 ? totalScore / comparisons : 0.0;
+	}
+
+	// Textbook Levenshtein over the names as they were normalized before FieldNames existed
+	private static double nameSimilarity(String name1, String name2) {
+		String a = name1.toLowerCase().replace("_", "").replace("-", "").replace(" ", "");
+		String b = name2.toLowerCase().replace("_", "").replace("-", "").replace(" ", "");
+		int maxLength = Math.max(a.length(), b.length());
+		if (maxLength == 0) {
+			return 1.0;
+		}
+		int[][] distances = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			for (int j = 0; j <= b.length(); j++) {
+				distances[i][j] = i == 0 ? j : j == 0 ? i : Math.min(
+						distances[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+						Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+			}
+		}
+		return 1.0 - (double) distances[a.length()][b.length()] / maxLength;
+	}
+
+	private static JsonNode object(String name, Random random, int depth) {
+		List<JsonNode> children = new ArrayList<>();
+		List<String> names = new ArrayList<>(List.of(NAMES));
+		int fields = depth == 0 ? random.nextInt(4) : 2 + random.nextInt(7);
+		for (int i = 0; i < fields; i++) {
+			String childName = names.remove(random.nextInt(names.size()));
+			children.add(depth > 0 && random.nextInt(3) == 0
+					? object(childName, random, random.nextInt(depth))
+					: leaf(childName, LEAF_TYPES[random.nextInt(LEAF_TYPES.length)]));
+		}
+		return node(name, "object", children);
+	}
+
+	// Thirty fields per level, the last of which holds the next level
+	private static JsonNode levels(String name, String suffix, int depth) {
+		List<JsonNode> children = new ArrayList<>();
+		for (int i = 0; i < 29; i++) {
+			children.add(leaf("field" + i + suffix, i % 2 == 0 ? "string" : "number"));
+		}
+		if (depth > 1) {
+			children.add(levels("nested" + suffix, suffix, depth - 1));
+		} else {
+			children.add(leaf("last" + suffix, "boolean"));
+		}
+		return node(name, "object", children);
+	}
+
+	private static JsonNode leaf(String name, String type) {
+		return node(name, type, null);
+	}
+
+	private static JsonNode node(String name, String type, List<JsonNode> children) {
+		JsonNode node = new JsonNode();
+		node.setName(name);
+		node.setType(type);
+		node.setChildren(children);
+		return node;
+	}
+
+	private static List<String> paths(List<MappingRule> rules) {
+		return rules.stream().map(rule -> rule.getSourcePath() + " -> " + rule.getTargetPath()).toList();
+	}
+}